@@ -19,20 +19,15 @@ package de.siphalor.nbtcrafting;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-import com.mojang.datafixers.util.Pair;
 import io.netty.buffer.Unpooled;
 import it.unimi.dsi.fastutil.ints.*;
 import net.fabricmc.api.ModInitializer;
 import net.fabricmc.fabric.api.networking.v1.ServerLoginConnectionEvents;
 import net.fabricmc.fabric.api.networking.v1.ServerLoginNetworking;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
-import net.minecraft.nbt.CompoundTag;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
 import net.minecraft.recipe.*;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.util.Identifier;
@@ -40,17 +35,17 @@ import net.minecraft.util.PacketByteBuf;
 import net.minecraft.util.registry.Registry;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.jetbrains.annotations.NotNull;
 
 import de.siphalor.nbtcrafting.advancement.StatChangedCriterion;
 import de.siphalor.nbtcrafting.api.RecipeTypeHelper;
-import de.siphalor.nbtcrafting.ingredient.IIngredient;
 import de.siphalor.nbtcrafting.mixin.advancement.MixinCriterions;
+import de.siphalor.nbtcrafting.network.AdvancedRecipeSync;
 import de.siphalor.nbtcrafting.recipe.AnvilRecipe;
 import de.siphalor.nbtcrafting.recipe.BrewingRecipe;
 import de.siphalor.nbtcrafting.recipe.WrappedRecipeSerializer;
 import de.siphalor.nbtcrafting.recipe.cauldron.CauldronRecipe;
 import de.siphalor.nbtcrafting.recipe.cauldron.CauldronRecipeSerializer;
+import de.siphalor.nbtcrafting.util.StackIdInterner;
 import de.siphalor.nbtcrafting.util.duck.IServerPlayerEntity;
 
 public class NbtCrafting implements ModInitializer {
@@ -63,6 +58,7 @@ public class NbtCrafting implements ModInitializer {
 	public static final Identifier PRESENCE_CHANNEL = new Identifier(MOD_ID, "present");
 	public static final Identifier UPDATE_ANVIL_TEXT_S2C_PACKET_ID = new Identifier(MOD_ID, "update_anvil_text");
 	public static final Identifier UPDATE_ADVANCED_RECIPES_PACKET_ID = new Identifier(MOD_ID, "update_advanced_recipes");
+	public static final Identifier REQUEST_ADVANCED_RECIPES_C2S_PACKET_ID = new Identifier(MOD_ID, "request_advanced_recipes");
 
 	public static final RecipeType<AnvilRecipe> ANVIL_RECIPE_TYPE = registerRecipeType("anvil");
 	public static final RecipeSerializer<AnvilRecipe> ANVIL_RECIPE_SERIALIZER = registerRecipeSerializer("anvil", AnvilRecipe.SERIALIZER);
@@ -77,32 +73,20 @@ public class NbtCrafting implements ModInitializer {
 
 	public static final StatChangedCriterion STAT_CHANGED_CRITERION = MixinCriterions.registerCriterion(new StatChangedCriterion());
 
-	private static boolean lastReadNbtPresent = false;
-	private static CompoundTag lastReadNbt;
-
 	public static RecipeFinder lastRecipeFinder;
 	public static ThreadLocal<ServerPlayerEntity> lastServerPlayerEntity = new ThreadLocal<>();
 	public static ThreadLocal<Boolean> advancedIngredientSerializationEnabled = new ThreadLocal<>();
-	private static final IntSet hasModClientConnectionHashes = IntSets.synchronize(new IntAVLTreeSet());
+	private static final Int2IntMap modClientProtocolVersions = Int2IntMaps.synchronize(new Int2IntOpenHashMap());
 
-	private static int currentStackId = 1;
-	public static final Int2ObjectMap<Pair<Integer, CompoundTag>> id2StackMap = new Int2ObjectAVLTreeMap<>();
-	public static final LoadingCache<Pair<Integer, CompoundTag>, Integer> stack2IdMap = CacheBuilder.newBuilder().expireAfterAccess(5, TimeUnit.MINUTES).removalListener(notification -> {
-				synchronized (id2StackMap) {
-					id2StackMap.remove((int) notification.getValue());
-				}
-			}
-	).build(new CacheLoader<Pair<Integer, CompoundTag>, Integer>() {
-		@Override
-		public Integer load(@NotNull Pair<Integer, CompoundTag> key) {
-			synchronized (id2StackMap) {
-				while (id2StackMap.putIfAbsent(currentStackId, key) != null) {
-					currentStackId++;
-				}
-				return currentStackId++;
-			}
-		}
-	});
+	public static final StackIdInterner STACK_ID_INTERNER = new StackIdInterner();
+
+	public static boolean isDebugLogEnabled() {
+		return LOGGER.isDebugEnabled();
+	}
+
+	public static void logDebug(String message) {
+		LOGGER.debug(LOG_PREFIX + message);
+	}
 
 	public static void logInfo(String message) {
 		LOGGER.info(LOG_PREFIX + message);
@@ -116,51 +100,37 @@ public class NbtCrafting implements ModInitializer {
 		LOGGER.error(LOG_PREFIX + message);
 	}
 
-	@SuppressWarnings("unused")
-	public static boolean hasLastReadNbt() {
-		return lastReadNbtPresent;
-	}
-
-	@SuppressWarnings("unused")
-	public static void clearLastReadNbt() {
-		lastReadNbt = null;
-		lastReadNbtPresent = false;
-	}
-
-	public static void setLastReadNbt(CompoundTag nbt) {
-		lastReadNbt = nbt;
-		lastReadNbtPresent = true;
-	}
-
-	public static CompoundTag useLastReadNbt() {
-		CompoundTag result = null;
-		if (lastReadNbt != null) {
-			result = lastReadNbt.copy();
-			lastReadNbt = null;
-		}
-		lastReadNbtPresent = false;
-		return result;
-	}
-
 	@Override
 	public void onInitialize() {
 		ServerLoginConnectionEvents.QUERY_START.register((handler, server, sender, synchronizer) -> {
-			sender.sendPacket(PRESENCE_CHANNEL, new PacketByteBuf(Unpooled.buffer()));
+			PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+			buf.writeVarInt(AdvancedRecipeSync.PROTOCOL_VERSION);
+			sender.sendPacket(PRESENCE_CHANNEL, buf);
 		});
 		ServerLoginConnectionEvents.DISCONNECT.register((handler, server) -> {
-			hasModClientConnectionHashes.remove(handler.client.hashCode());
+			modClientProtocolVersions.remove(handler.client.hashCode());
 		});
 		ServerLoginNetworking.registerGlobalReceiver(PRESENCE_CHANNEL, (server, handler, understood, buf, synchronizer, responseSender) -> {
 			if (understood) {
-				hasModClientConnectionHashes.add(handler.client.hashCode());
+				// older clients respond with an empty buffer
+				modClientProtocolVersions.put(handler.client.hashCode(), buf.isReadable() ? buf.readVarInt() : 0);
 			}
 		});
 		ServerPlayConnectionEvents.JOIN.register((handler, sender, server) -> {
-			if (hasModClientConnectionHashes.contains(handler.client.hashCode())) {
+			int connectionHash = handler.client.hashCode();
+			if (modClientProtocolVersions.containsKey(connectionHash)) {
 				((IServerPlayerEntity) handler.player).nbtCrafting$setClientModPresent(true);
-				hasModClientConnectionHashes.remove(handler.client.hashCode());
+				((IServerPlayerEntity) handler.player).nbtCrafting$setClientModProtocolVersion(modClientProtocolVersions.remove(connectionHash));
 			}
 		});
+		ServerPlayNetworking.registerGlobalReceiver(REQUEST_ADVANCED_RECIPES_C2S_PACKET_ID, (server, player, handler, buf, responseSender) -> {
+			// the client couldn't apply a delta, so it needs all advanced recipes again
+			server.execute(() -> {
+				if (hasClientMod(player)) {
+					AdvancedRecipeSync.requestSync(server.getRecipeManager(), player);
+				}
+			});
+		});
 	}
 
 	public static boolean hasClientMod(ServerPlayerEntity playerEntity) {
@@ -188,35 +158,9 @@ public class NbtCrafting implements ModInitializer {
 	}
 
 	public static List<PacketByteBuf> createAdvancedRecipeSyncPackets(RecipeManager recipeManager) {
-		advancedIngredientSerializationEnabled.set(true);
-		List<Recipe<?>> recipes = recipeManager.values().stream().filter(recipe -> {
-			for (Ingredient ingredient : recipe.getPreviewInputs()) {
-				if (((IIngredient) (Object) ingredient).nbtCrafting$isAdvanced()) {
-					return true;
-				}
-			}
-			return false;
-		}).collect(Collectors.toList());
-
+		List<Recipe<?>> recipes = recipeManager.values().stream().filter(AdvancedRecipeSync::isAdvanced).collect(Collectors.toList());
 		List<PacketByteBuf> packets = new ArrayList<>();
-		PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
-		buf.writeVarInt(0);
-
-		for (Recipe<?> recipe : recipes) {
-			@SuppressWarnings("rawtypes")
-			RecipeSerializer serializer = recipe.getSerializer();
-			buf.writeIdentifier(Registry.RECIPE_SERIALIZER.getId(serializer));
-			buf.writeIdentifier(recipe.getId());
-			//noinspection unchecked
-			serializer.write(buf, recipe);
-
-			if (buf.readableBytes() > 1_900_000) { // max packet size is 2^21=2_097_152 bytes
-				packets.add(buf);
-				buf = new PacketByteBuf(Unpooled.buffer());
-				buf.writeVarInt(0);
-			}
-		}
-		advancedIngredientSerializationEnabled.set(false);
+		AdvancedRecipeSync.encode(recipes, packets::add);
 		return packets;
 	}
 
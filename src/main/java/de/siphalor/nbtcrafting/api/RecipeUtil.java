@@ -17,9 +17,11 @@
 
 package de.siphalor.nbtcrafting.api;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import net.minecraft.inventory.Inventory;
 import net.minecraft.item.ItemStack;
@@ -34,6 +36,8 @@ import de.siphalor.nbtcrafting.api.nbt.NbtUtil;
 import de.siphalor.nbtcrafting.dollar.Dollar;
 import de.siphalor.nbtcrafting.dollar.DollarException;
 import de.siphalor.nbtcrafting.dollar.DollarParser;
+import de.siphalor.nbtcrafting.dollar.DollarReferenceFrame;
+import de.siphalor.nbtcrafting.dollar.DollarTemplate;
 import de.siphalor.nbtcrafting.ingredient.IIngredient;
 
 public class RecipeUtil {
@@ -52,6 +56,24 @@ public class RecipeUtil {
 		return stack;
 	}
 
+	public static ItemStack getDollarAppliedResult(DollarTemplate template, List<Ingredient> ingredients, Inventory inventory) {
+		ItemStack stack = template.createStack();
+		if (template.hasDollars()) {
+			Set<String> references = template.getReferences();
+			DollarReferenceFrame frame = DollarReferenceFrame.acquire();
+			try {
+				// constant dollars don't need to know anything about the ingredients
+				if (!references.isEmpty()) {
+					fillReferenceFrameFromResolvedIngredients(frame, resolveIngredients(ingredients, inventory), inventory, references);
+				}
+				return applyDollars(stack, template.getDollars(), frame);
+			} finally {
+				frame.release();
+			}
+		}
+		return stack;
+	}
+
 	public static Map<String, Object> buildReferenceMapFromResolvedIngredients(int[] resolvedIngredientStacks, Inventory inventory) {
 		Map<String, Object> reference = new HashMap<>();
 		for (int i = 0; i < resolvedIngredientStacks.length; i++) {
@@ -63,10 +85,58 @@ public class RecipeUtil {
 		return reference;
 	}
 
+	public static void fillReferenceFrameFromResolvedIngredients(DollarReferenceFrame frame, int[] resolvedIngredientStacks, Inventory inventory) {
+		fillReferenceFrameFromResolvedIngredients(frame, resolvedIngredientStacks, inventory, null);
+	}
+
+	/**
+	 * Fills the given frame with the tags of the resolved ingredient stacks.
+	 *
+	 * @param frame                    the frame to fill
+	 * @param resolvedIngredientStacks the ingredient to stack resolution
+	 * @param inventory                the inventory to take the stacks from
+	 * @param references               the reference names that are actually read, or <code>null</code> to put all ingredients
+	 */
+	public static void fillReferenceFrameFromResolvedIngredients(DollarReferenceFrame frame, int[] resolvedIngredientStacks, Inventory inventory, Set<String> references) {
+		for (int i = 0; i < resolvedIngredientStacks.length; i++) {
+			int resolvedIngredientStack = resolvedIngredientStacks[i];
+			if (resolvedIngredientStack != -1 && (references == null || references.contains(DollarReferenceFrame.getIngredientName(i)))) {
+				frame.set(DollarReferenceFrame.getIngredientSlot(i), NbtUtil.getTagOrEmpty(inventory.getInvStack(resolvedIngredientStack)));
+			}
+		}
+	}
+
+	/**
+	 * Checks whether a recipe class overrides one of the map based {@link de.siphalor.nbtcrafting.api.recipe.NBTCRecipe#buildDollarReference(Inventory)}
+	 * methods below the given base class.
+	 * Base classes that write their references directly in {@link de.siphalor.nbtcrafting.api.recipe.NBTCRecipe#fillDollarReference(Inventory, int[], DollarReferenceFrame)}
+	 * must fall back to the maps in that case, so that the overrides stay in effect.
+	 * @param recipeClass the runtime class of the recipe
+	 * @param baseClass the class that implements the direct filling
+	 * @param inventoryClass the inventory type that the base class uses
+	 * @return whether the map based references need to be used
+	 */
+	public static boolean overridesDollarReferenceBuilder(Class<?> recipeClass, Class<?> baseClass, Class<? extends Inventory> inventoryClass) {
+		return declaresDollarReferenceBuilder(recipeClass, baseClass, inventoryClass)
+				|| declaresDollarReferenceBuilder(recipeClass, baseClass, Inventory.class)
+				|| declaresDollarReferenceBuilder(recipeClass, baseClass, inventoryClass, int[].class)
+				|| declaresDollarReferenceBuilder(recipeClass, baseClass, Inventory.class, int[].class);
+	}
+
+	private static boolean declaresDollarReferenceBuilder(Class<?> recipeClass, Class<?> baseClass, Class<?>... parameterTypes) {
+		try {
+			Class<?> declaringClass = recipeClass.getMethod("buildDollarReference", parameterTypes).getDeclaringClass();
+			return declaringClass != baseClass && baseClass.isAssignableFrom(declaringClass);
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
 	public static int[] resolveIngredients(List<Ingredient> ingredients, Inventory inventory) {
 		final int ingredientCount = ingredients.size();
 		final int inventorySize = inventory.getInvSize();
-		int[] resolvedIngredientStacks = new int[ingredientCount];
+		int[] resolvedIngredientStacks = new int[ingredientCount]; // the stack index for each ingredient or -1
+		Arrays.fill(resolvedIngredientStacks, -1);
 		boolean[] stackMatchesToAnything = new boolean[inventorySize]; // whether a stack has been resolved already
 		byte[] matches = new byte[ingredientCount * inventorySize]; // 0 = unchecked, 1 = match, -1 = no match
 
@@ -115,52 +185,47 @@ public class RecipeUtil {
 			}
 		}
 
-		// try a reverse brute force matching
-		int currentIngredient = 0; // the ingredient currently being matched
-		int[] ingredientStackIndices = new int[ingredientCount]; // the stack indices currently being matched for each ingredient
-		boolean[] usedStacks = new boolean[inventorySize]; // whether stacks are used in the current matching
-		ingredientStackIndices[0] = inventorySize; // for reverse matching
-
-		outer:
-		while (true) {
-			final int ingredientMatchesOffset = currentIngredient * inventorySize;
-			int ingredientStackIndex = ingredientStackIndices[currentIngredient]; // temp variable to avoid constant array access
-			while (true) {
-				ingredientStackIndex--;
-
-				if (ingredientStackIndex < 0) { // no matching stacks found
-					currentIngredient--; // continue matching with the previous ingredient
-					if (currentIngredient < 0) { // if there is no previous ingredient, no matching is possible
-						// this should technically never happen, as recipes are checked for validity before reference maps are built
-						NbtCrafting.logWarn("Failed to build reference map dynamically for recipe! Please report this on the Nbt Crafting issue tracker!");
-						break outer;
-					}
-
-					// mark stack as free again
-					usedStacks[ingredientStackIndices[currentIngredient]] = false;
-					continue outer;
-				}
-				if (usedStacks[ingredientStackIndex]) { // stack is already in use
-					continue;
-				}
+		// find a maximum bipartite matching through augmenting paths, starting with the greedy matches
+		int[] stackIngredients = new int[inventorySize]; // the ingredient that each stack is matched to
+		Arrays.fill(stackIngredients, -1);
+		for (int j = 0; j < ingredientCount; j++) {
+			if (resolvedIngredientStacks[j] != -1) {
+				stackIngredients[resolvedIngredientStacks[j]] = j;
+			}
+		}
 
-				if (matches[ingredientMatchesOffset + ingredientStackIndex] == 1) { // stack matches to the ingredient
-					// mark stack as matched
-					ingredientStackIndices[currentIngredient] = ingredientStackIndex;
-					usedStacks[ingredientStackIndex] = true;
+		boolean[] visitedStacks = new boolean[inventorySize];
+		for (int j = 0; j < ingredientCount; j++) {
+			if (resolvedIngredientStacks[j] != -1)
+				continue;
+			Arrays.fill(visitedStacks, false);
+			if (!findAugmentingPath(j, matches, inventorySize, resolvedIngredientStacks, stackIngredients, visitedStacks)) {
+				// this should technically never happen, as recipes are checked for validity before reference maps are built
+				NbtCrafting.logWarn("Failed to build reference map dynamically for recipe! Please report this on the Nbt Crafting issue tracker!");
+			}
+		}
 
-					currentIngredient++; // continue with the next ingredient
-					if (currentIngredient >= ingredientCount) { // all ingredients have been matched, we're done
-						break outer;
-					}
-					ingredientStackIndices[currentIngredient] = inventorySize; // for reverse matching
+		return resolvedIngredientStacks;
+	}
 
-					continue outer;
-				}
+	/**
+	 * Tries to match the given ingredient to a stack, moving already matched ingredients to other stacks if necessary.
+	 *
+	 * @return whether the ingredient could be matched
+	 */
+	private static boolean findAugmentingPath(int ingredient, byte[] matches, int inventorySize, int[] resolvedIngredientStacks, int[] stackIngredients, boolean[] visitedStacks) {
+		int ingredientMatchesOffset = ingredient * inventorySize;
+		for (int i = 0; i < inventorySize; i++) {
+			if (matches[ingredientMatchesOffset + i] != 1 || visitedStacks[i])
+				continue;
+			visitedStacks[i] = true;
+			if (stackIngredients[i] == -1 || findAugmentingPath(stackIngredients[i], matches, inventorySize, resolvedIngredientStacks, stackIngredients, visitedStacks)) {
+				stackIngredients[i] = ingredient;
+				resolvedIngredientStacks[ingredient] = i;
+				return true;
 			}
 		}
-
-		return ingredientStackIndices;
+		return false;
 	}
 
 	@Deprecated
@@ -190,6 +255,20 @@ public class RecipeUtil {
 		return stack;
 	}
 
+	public static ItemStack getDollarAppliedResult(DollarTemplate template, String referenceName, Inventory inventory) {
+		ItemStack stack = template.createStack();
+		if (template.hasDollars()) {
+			DollarReferenceFrame frame = DollarReferenceFrame.acquire();
+			try {
+				frame.put(referenceName, NbtUtil.getTagOrEmpty(inventory.getInvStack(0)));
+				return applyDollars(stack, template.getDollars(), frame);
+			} finally {
+				frame.release();
+			}
+		}
+		return stack;
+	}
+
 	public static ItemStack getRemainder(ItemStack itemStack, Ingredient ingredient, Map<String, Object> reference) {
 		ItemStack result = ((IIngredient) (Object) ingredient).nbtCrafting$getRecipeRemainder(itemStack, reference);
 		if (result == null) {
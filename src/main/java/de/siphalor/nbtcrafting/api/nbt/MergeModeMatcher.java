@@ -0,0 +1,213 @@
+/*
+ * Copyright 2020-2022 Siphalor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package de.siphalor.nbtcrafting.api.nbt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import com.mojang.datafixers.util.Pair;
+
+/**
+ * Resolves the {@link MergeMode} for paths visited during {@link NbtUtil#mergeInto(net.minecraft.nbt.CompoundTag, net.minecraft.nbt.CompoundTag, MergeModeMatcher)}.
+ * <p>
+ * Literal paths are compiled into a character trie that is walked alongside the merge,
+ * so paths without any configured merge mode are ruled out after a few characters.
+ * Regular expressions are only evaluated if they have been declared before the best literal match.
+ * The first declared entry that matches a path wins, just as with a list of patterns.
+ */
+public class MergeModeMatcher {
+	public static final MergeModeMatcher EMPTY = new Builder().build();
+
+	private final Node root;
+	private final Pattern[] patterns;
+	private final MergeMode[] patternModes;
+	private final int[] patternPriorities;
+
+	private MergeModeMatcher(Node root, Pattern[] patterns, MergeMode[] patternModes, int[] patternPriorities) {
+		this.root = root;
+		this.patterns = patterns;
+		this.patternModes = patternModes;
+		this.patternPriorities = patternPriorities;
+	}
+
+	/**
+	 * Creates a matcher that uses the given patterns in order.
+	 *
+	 * @param mergeModes the patterns and their merge modes
+	 * @return a new matcher
+	 */
+	public static MergeModeMatcher ofPatterns(Collection<Pair<Pattern, MergeMode>> mergeModes) {
+		Builder builder = new Builder();
+		for (Pair<Pattern, MergeMode> mergeMode : mergeModes) {
+			builder.addPattern(mergeMode.getFirst(), mergeMode.getSecond());
+		}
+		return builder.build();
+	}
+
+	public boolean isEmpty() {
+		return root == null && patterns.length == 0;
+	}
+
+	/**
+	 * @return whether the visited path has to be tracked as a string for regular expressions
+	 */
+	boolean hasPatterns() {
+		return patterns.length > 0;
+	}
+
+	Node getRoot() {
+		return root;
+	}
+
+	static Node step(Node node, char character) {
+		if (node == null) {
+			return null;
+		}
+		char[] chars = node.chars;
+		for (int i = 0; i < chars.length; i++) {
+			if (chars[i] == character) {
+				return node.children[i];
+			}
+		}
+		return null;
+	}
+
+	static Node stepKey(Node node, boolean separator, String key) {
+		if (separator) {
+			node = step(node, '.');
+		}
+		for (int i = 0, length = key.length(); node != null && i < length; i++) {
+			node = step(node, key.charAt(i));
+		}
+		return node;
+	}
+
+	static Node stepIndex(Node node, int index) {
+		node = step(node, '[');
+		if (node == null) {
+			return null;
+		}
+		int divisor = 1;
+		while (index / divisor >= 10) {
+			divisor *= 10;
+		}
+		for (; node != null && divisor > 0; divisor /= 10) {
+			node = step(node, (char) ('0' + index / divisor % 10));
+		}
+		return step(node, ']');
+	}
+
+	/**
+	 * Resolves the merge mode for a path.
+	 *
+	 * @param node the trie node reached with the path, may be <code>null</code>
+	 * @param path the path as a string; only required if {@link #hasPatterns()} is true
+	 * @return the resolved merge mode, {@link MergeMode#MERGE} if nothing matches
+	 */
+	MergeMode getMergeMode(Node node, CharSequence path) {
+		MergeMode best = MergeMode.MERGE;
+		int bestPriority = Integer.MAX_VALUE;
+		if (node != null && node.mode != null) {
+			best = node.mode;
+			bestPriority = node.priority;
+		}
+		for (int i = 0; i < patterns.length && patternPriorities[i] < bestPriority; i++) {
+			if (patterns[i].matcher(path).matches()) {
+				return patternModes[i];
+			}
+		}
+		return best;
+	}
+
+	static final class Node {
+		private char[] chars = new char[0];
+		private Node[] children = new Node[0];
+		private MergeMode mode;
+		private int priority = Integer.MAX_VALUE;
+
+		private Node getOrCreateChild(char character) {
+			for (int i = 0; i < chars.length; i++) {
+				if (chars[i] == character) {
+					return children[i];
+				}
+			}
+			Node child = new Node();
+			chars = Arrays.copyOf(chars, chars.length + 1);
+			children = Arrays.copyOf(children, children.length + 1);
+			chars[chars.length - 1] = character;
+			children[children.length - 1] = child;
+			return child;
+		}
+	}
+
+	public static class Builder {
+		private Node root;
+		private final List<Pattern> patterns = new ArrayList<>();
+		private final List<MergeMode> patternModes = new ArrayList<>();
+		private final List<Integer> patternPriorities = new ArrayList<>();
+		private int priority = 0;
+
+		/**
+		 * Adds paths that have to match exactly. All given paths share the same priority.
+		 *
+		 * @param mergeMode the merge mode to use for the paths
+		 * @param paths     the literal paths
+		 * @return this builder
+		 */
+		public Builder addLiteral(MergeMode mergeMode, String... paths) {
+			if (root == null) {
+				root = new Node();
+			}
+			for (String path : paths) {
+				Node node = root;
+				for (int i = 0; i < path.length(); i++) {
+					node = node.getOrCreateChild(path.charAt(i));
+				}
+				if (priority < node.priority) {
+					node.mode = mergeMode;
+					node.priority = priority;
+				}
+			}
+			priority++;
+			return this;
+		}
+
+		public Builder addPattern(Pattern pattern, MergeMode mergeMode) {
+			patterns.add(pattern);
+			patternModes.add(mergeMode);
+			patternPriorities.add(priority++);
+			return this;
+		}
+
+		public MergeModeMatcher build() {
+			int[] priorities = new int[patternPriorities.size()];
+			for (int i = 0; i < priorities.length; i++) {
+				priorities[i] = patternPriorities.get(i);
+			}
+			return new MergeModeMatcher(
+					root,
+					patterns.toArray(new Pattern[0]),
+					patternModes.toArray(new MergeMode[0]),
+					priorities
+			);
+		}
+	}
+}
@@ -21,6 +21,8 @@ import net.minecraft.nbt.AbstractNumberTag;
 import net.minecraft.nbt.DoubleTag;
 import net.minecraft.nbt.IntTag;
 
+import de.siphalor.nbtcrafting.NbtCrafting;
+
 public class NbtNumberRange {
 	public static final NbtNumberRange ANY_INT = new NbtNumberRange(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, true);
 	public static final NbtNumberRange ANY_DOUBLE = new NbtNumberRange(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, false);
@@ -76,42 +78,134 @@ public class NbtNumberRange {
 	}
 
 	public static NbtNumberRange ofString(String string) {
-		if (!string.contains("..")) {
-			try {
-				return NbtNumberRange.equals(parseNumber(string));
-			} catch (NumberFormatException e) {
-				e.printStackTrace();
-			}
+		NbtNumberRange range = tryParse(string);
+		if (range == null) {
+			NbtCrafting.logWarn("Invalid number range: " + string);
+			return ANY_INT;
 		}
+		return range;
+	}
+
+	/**
+	 * Parses a range like <code>1</code>, <code>..5</code>, <code>1..</code> or <code>1..5</code>.
+	 *
+	 * @param string the range to parse
+	 * @return the range or <code>null</code> if the string is not a valid range
+	 */
+	public static NbtNumberRange tryParse(String string) {
 		int position = string.indexOf("..");
-		if (position == 0) {
-			try {
-				return NbtNumberRange.fromInfinity(parseNumber(string.substring(2)));
-			} catch (NumberFormatException e) {
-				e.printStackTrace();
+		if (position < 0) {
+			Number number = parseNumber(string);
+			if (number != null) {
+				return NbtNumberRange.equals(number);
+			}
+		} else if (position == 0) {
+			Number end = parseNumber(string.substring(2));
+			if (end != null) {
+				return NbtNumberRange.fromInfinity(end);
 			}
 		} else if (position == string.length() - 2) {
-			try {
-				return NbtNumberRange.toInfinity(parseNumber(string.substring(0, string.length() - 2)));
-			} catch (NumberFormatException e) {
-				e.printStackTrace();
+			Number begin = parseNumber(string.substring(0, position));
+			if (begin != null) {
+				return NbtNumberRange.toInfinity(begin);
 			}
 		} else {
-			try {
-				return NbtNumberRange.between(parseNumber(string.substring(0, position)), parseNumber(string.substring(position + 2)));
-			} catch (NumberFormatException e) {
-				e.printStackTrace();
+			Number begin = parseNumber(string.substring(0, position));
+			Number end = parseNumber(string.substring(position + 2));
+			if (begin != null && end != null) {
+				return NbtNumberRange.between(begin, end);
 			}
 		}
-		return ANY_INT;
+		return null;
 	}
 
-	private static Number parseNumber(String string) throws NumberFormatException {
-		try {
-			return Integer.parseInt(string);
-		} catch (NumberFormatException e) {
-			return Double.parseDouble(string);
+	/**
+	 * Parses an integer or a decimal number without relying on exceptions.
+	 *
+	 * @param string the string to parse
+	 * @return an {@link Integer} if the string is an integer in range, a {@link Double} if it is a decimal number
+	 * or <code>null</code> if it isn't a number at all
+	 */
+	public static Number parseNumber(String string) {
+		int length = string.length();
+		int i = 0;
+		if (length > 0 && (string.charAt(0) == '-' || string.charAt(0) == '+')) {
+			i++;
+		}
+		if (i < length) {
+			long value = 0;
+			int j = i;
+			for (; j < length; j++) {
+				char c = string.charAt(j);
+				if (c < '0' || c > '9' || value > Integer.MAX_VALUE + 1L) {
+					break;
+				}
+				value = value * 10 + (c - '0');
+			}
+			if (j == length) {
+				if (string.charAt(0) == '-') {
+					value = -value;
+				}
+				if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+					return (int) value;
+				}
+			}
+		}
+
+		String trimmed = string.trim();
+		if (isDecimal(trimmed)) {
+			return Double.parseDouble(trimmed);
+		}
+		return null;
+	}
+
+	/**
+	 * Checks whether the given string is accepted by {@link Double#parseDouble(String)}.
+	 * Hexadecimal notation is not supported.
+	 */
+	private static boolean isDecimal(String string) {
+		int length = string.length();
+		int i = 0;
+		if (i < length && (string.charAt(i) == '-' || string.charAt(i) == '+')) {
+			i++;
+		}
+		String rest = string.substring(i);
+		if (rest.equals("Infinity") || rest.equals("NaN")) {
+			return true;
+		}
+		if (i < length && "dDfF".indexOf(string.charAt(length - 1)) >= 0) {
+			length--;
+		}
+		int digits = 0;
+		while (i < length && string.charAt(i) >= '0' && string.charAt(i) <= '9') {
+			i++;
+			digits++;
+		}
+		if (i < length && string.charAt(i) == '.') {
+			i++;
+			while (i < length && string.charAt(i) >= '0' && string.charAt(i) <= '9') {
+				i++;
+				digits++;
+			}
+		}
+		if (digits == 0) {
+			return false;
+		}
+		if (i < length && (string.charAt(i) == 'e' || string.charAt(i) == 'E')) {
+			i++;
+			if (i < length && (string.charAt(i) == '-' || string.charAt(i) == '+')) {
+				i++;
+			}
+			int exponentDigits = 0;
+			while (i < length && string.charAt(i) >= '0' && string.charAt(i) <= '9') {
+				i++;
+				exponentDigits++;
+			}
+			if (exponentDigits == 0) {
+				return false;
+			}
 		}
+		return i == length;
 	}
 
 	private static boolean isInteger(Number number) {
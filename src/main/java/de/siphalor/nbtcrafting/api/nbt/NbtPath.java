@@ -0,0 +1,252 @@
+/*
+ * Copyright 2020-2022 Siphalor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package de.siphalor.nbtcrafting.api.nbt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.minecraft.nbt.AbstractListTag;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.Tag;
+
+/**
+ * A precompiled path into nbt data, like <code>display.Lore[0]</code>.
+ * <p>
+ * Paths are split the same way as {@link NbtUtil#splitPath(String)} does,
+ * but the steps are only parsed once and can then be used without any further allocations.
+ */
+public final class NbtPath {
+	public static final NbtPath ROOT = new NbtPath("", new String[0], new int[0]);
+
+	private final String source;
+	/**
+	 * The compound keys of the steps; <code>null</code> for list index steps.
+	 */
+	private final String[] keys;
+	private final int[] indices;
+
+	private NbtPath(String source, String[] keys, int[] indices) {
+		this.source = source;
+		this.keys = keys;
+		this.indices = indices;
+	}
+
+	/**
+	 * Parses a path in the form <code>a.b[1].c</code>.
+	 * Empty parts are ignored. Brackets that don't contain a valid index are treated as part of a compound key.
+	 *
+	 * @param path the path to parse
+	 * @return the compiled path
+	 */
+	public static NbtPath parse(String path) {
+		if (path.isEmpty()) {
+			return ROOT;
+		}
+		List<String> keys = new ArrayList<>();
+		List<Integer> indices = new ArrayList<>();
+		int length = path.length();
+		int start = 0;
+		for (int i = 0; i <= length; i++) {
+			char c = i < length ? path.charAt(i) : '.';
+			if (c == '.' || (c == '[' && i > start)) {
+				if (i > start) {
+					addStep(path, start, i, keys, indices);
+				}
+				start = c == '.' ? i + 1 : i;
+			}
+		}
+
+		int[] indexArray = new int[indices.size()];
+		for (int i = 0; i < indexArray.length; i++) {
+			indexArray[i] = indices.get(i);
+		}
+		return new NbtPath(path, keys.toArray(new String[0]), indexArray);
+	}
+
+	private static void addStep(String path, int start, int end, List<String> keys, List<Integer> indices) {
+		if (path.charAt(start) == '[' && end - start > 2 && path.charAt(end - 1) == ']') {
+			int index = 0;
+			boolean valid = true;
+			for (int i = start + 1; i < end - 1; i++) {
+				char c = path.charAt(i);
+				if (c < '0' || c > '9' || index > (Integer.MAX_VALUE - 9) / 10) {
+					valid = false;
+					break;
+				}
+				index = index * 10 + (c - '0');
+			}
+			if (valid) {
+				keys.add(null);
+				indices.add(index);
+				return;
+			}
+		}
+		keys.add(path.substring(start, end));
+		indices.add(-1);
+	}
+
+	public int size() {
+		return keys.length;
+	}
+
+	public boolean isIndex(int step) {
+		return keys[step] == null;
+	}
+
+	public String getKey(int step) {
+		return keys[step];
+	}
+
+	public int getIndex(int step) {
+		return indices[step];
+	}
+
+	/**
+	 * Resolves this path on the given tag.
+	 *
+	 * @param main the tag to start at
+	 * @return the found tag or <code>null</code> if the path doesn't exist
+	 */
+	public Tag get(Tag main) {
+		Tag currentTag = main;
+		for (int i = 0; i < keys.length; i++) {
+			if (currentTag == null)
+				return null;
+			String key = keys[i];
+			if (key == null) {
+				if (!NbtUtil.isList(currentTag))
+					return null;
+				AbstractListTag<Tag> list = NbtUtil.asListTag(currentTag);
+				if (indices[i] >= list.size())
+					return null;
+				currentTag = list.get(indices[i]);
+			} else {
+				if (!NbtUtil.isCompound(currentTag))
+					return null;
+				currentTag = NbtUtil.asCompoundTag(currentTag).get(key);
+			}
+		}
+		return currentTag;
+	}
+
+	/**
+	 * Resolves this path on the given tag and creates missing compounds on the way.
+	 *
+	 * @param main the tag to start at
+	 * @return the found or created compound or list tag
+	 * @throws NbtException if the path runs into a tag of an incompatible type
+	 */
+	public Tag getOrCreate(Tag main) throws NbtException {
+		return getOrCreate(main, keys.length);
+	}
+
+	private Tag getOrCreate(Tag main, int stepCount) throws NbtException {
+		Tag currentTag = main;
+		for (int i = 0; i < stepCount; i++) {
+			String key = keys[i];
+			if (key == null) {
+				if (!NbtUtil.isList(currentTag)) {
+					throw new NbtException(source + " doesn't match on " + main.asString());
+				}
+				AbstractListTag<Tag> currentList = NbtUtil.asListTag(currentTag);
+				if (currentList.size() <= indices[i]) {
+					throw new NbtException(source + " contains invalid list in " + main.asString());
+				}
+				Tag child = currentList.get(indices[i]);
+				if (!NbtUtil.isCompound(child) && !NbtUtil.isList(child)) {
+					throw new NbtException(source + " doesn't match on " + main.asString());
+				}
+				currentTag = child;
+			} else {
+				if (!NbtUtil.isCompound(currentTag)) {
+					throw new NbtException(source + " doesn't match on " + main.asString());
+				}
+				CompoundTag currentCompound = NbtUtil.asCompoundTag(currentTag);
+				Tag child = currentCompound.get(key);
+				if (child == null) {
+					child = new CompoundTag();
+					currentCompound.put(key, child);
+				} else if (!NbtUtil.isCompound(child) && !NbtUtil.isList(child)) {
+					throw new NbtException(source + " doesn't match on " + main.asString());
+				}
+				currentTag = child;
+			}
+		}
+		return currentTag;
+	}
+
+	/**
+	 * Puts the given tag at this path. Missing compounds on the way are created.
+	 * For list indices, the tag is inserted at the index.
+	 *
+	 * @param main the tag to start at
+	 * @param tag  the tag to put or <code>null</code> to remove the tag at this path
+	 * @throws NbtException if the path is empty or runs into a tag of an incompatible type
+	 */
+	public void put(Tag main, Tag tag) throws NbtException {
+		int last = keys.length - 1;
+		if (last < 0) {
+			throw new NbtException("Can't put a tag at an empty path");
+		}
+		Tag parent = getOrCreate(main, last);
+
+		String key = keys[last];
+		if (key == null) {
+			if (!NbtUtil.isList(parent)) {
+				throw new NbtException(source + " doesn't match on " + main.asString());
+			}
+			if (tag == null) {
+				NbtUtil.asListTag(parent).remove(indices[last]);
+			} else {
+				try {
+					NbtUtil.asListTag(parent).add(indices[last], tag);
+				} catch (Exception e) {
+					throw new NbtException("Can't add tag " + tag.asString() + " to list: " + parent.asString());
+				}
+			}
+		} else {
+			if (!NbtUtil.isCompound(parent)) {
+				throw new NbtException(source + " doesn't match on " + main.asString());
+			}
+			if (tag == null) {
+				NbtUtil.asCompoundTag(parent).remove(key);
+			} else {
+				NbtUtil.asCompoundTag(parent).put(key, tag);
+			}
+		}
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		NbtPath nbtPath = (NbtPath) o;
+		return Arrays.equals(keys, nbtPath.keys) && Arrays.equals(indices, nbtPath.indices);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Arrays.hashCode(keys) + Arrays.hashCode(indices);
+	}
+
+	@Override
+	public String toString() {
+		return source;
+	}
+}
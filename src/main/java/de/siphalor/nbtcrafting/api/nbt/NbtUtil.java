@@ -17,21 +17,25 @@
 
 package de.siphalor.nbtcrafting.api.nbt;
 
+import java.math.BigDecimal;
 import java.util.Collection;
+import java.util.Map;
 import java.util.StringJoiner;
 import java.util.regex.Pattern;
 
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
-import com.mojang.datafixers.Dynamic;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
 import com.mojang.datafixers.util.Pair;
-import net.minecraft.datafixer.NbtOps;
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.*;
 import org.apache.commons.lang3.ArrayUtils;
 import org.jetbrains.annotations.Contract;
 
 import de.siphalor.nbtcrafting.NbtCrafting;
-import de.siphalor.nbtcrafting.util.BetterJsonOps;
+import de.siphalor.nbtcrafting.util.NumberUtil;
 
 @SuppressWarnings("unused")
 public class NbtUtil {
@@ -206,7 +210,11 @@ public class NbtUtil {
 	}
 
 	public static Tag getTag(Tag main, String path) {
-		return getTag(main, splitPath(path));
+		return NbtPath.parse(path).get(main);
+	}
+
+	public static Tag getTag(Tag main, NbtPath path) {
+		return path.get(main);
 	}
 
 	public static Tag getTag(Tag main, String[] pathKeys) {
@@ -244,7 +252,11 @@ public class NbtUtil {
 	}
 
 	public static Tag getTagOrCreate(Tag main, String path) throws NbtException {
-		return getTagOrCreate(main, splitPath(path));
+		return NbtPath.parse(path).getOrCreate(main);
+	}
+
+	public static Tag getTagOrCreate(Tag main, NbtPath path) throws NbtException {
+		return path.getOrCreate(main);
 	}
 
 	public static Tag getTagOrCreate(Tag main, String[] pathParts) throws NbtException {
@@ -284,6 +296,10 @@ public class NbtUtil {
 		return currentTag;
 	}
 
+	public static void put(Tag main, NbtPath path, Tag tag) throws NbtException {
+		path.put(main, tag);
+	}
+
 	public static void put(Tag main, String[] pathParts, Tag tag) throws NbtException {
 		Tag parent = getTagOrCreate(main, ArrayUtils.subarray(pathParts, 0, pathParts.length - 1));
 
@@ -428,6 +444,117 @@ public class NbtUtil {
 		}
 	}
 
+	/**
+	 * Merges the additions into the target, resolving the merge modes through the given matcher.
+	 * Paths are relative to the given compounds.
+	 *
+	 * @param target    the compound to merge into
+	 * @param additions the compound to merge from
+	 * @param matcher   the merge mode matcher
+	 */
+	public static void mergeInto(CompoundTag target, CompoundTag additions, MergeModeMatcher matcher) {
+		mergeInto(target, additions, matcher, matcher.getRoot(), matcher.hasPatterns() ? new StringBuilder() : null, true);
+	}
+
+	private static void mergeInto(CompoundTag target, CompoundTag additions, MergeModeMatcher matcher, MergeModeMatcher.Node node, StringBuilder path, boolean emptyPath) {
+		if (additions == null) return;
+
+		int basePathLength = 0;
+		if (path != null) {
+			if (!emptyPath) path.append('.');
+			basePathLength = path.length();
+		}
+
+		for (String key : additions.getKeys()) {
+			MergeModeMatcher.Node keyNode = MergeModeMatcher.stepKey(node, !emptyPath, key);
+			if (path != null) {
+				path.setLength(basePathLength);
+				path.append(key);
+			}
+			MergeMode mergeMode = matcher.getMergeMode(keyNode, path);
+
+			if (target.contains(key)) {
+				if (mergeMode == MergeMode.UPDATE || mergeMode == MergeMode.OVERWRITE) {
+					//noinspection ConstantConditions
+					target.put(key, additions.get(key).copy());
+				} else if (mergeMode == MergeMode.MERGE) {
+					Tag targetTag = target.get(key);
+					Tag additionsTag = additions.get(key);
+
+					if (isCompound(targetTag) && isCompound(additionsTag)) {
+						mergeInto(asCompoundTag(targetTag), asCompoundTag(additionsTag), matcher, keyNode, path, emptyPath && key.isEmpty());
+					} else if (isList(targetTag) && isList(additionsTag)) {
+						mergeInto(asListTag(targetTag), asListTag(additionsTag), matcher, keyNode, path);
+					} else {
+						//noinspection ConstantConditions
+						target.put(key, additionsTag.copy());
+					}
+				}
+			} else if (mergeMode != MergeMode.UPDATE) {
+				//noinspection ConstantConditions
+				target.put(key, additions.get(key).copy());
+			}
+		}
+
+		if (path != null) {
+			path.setLength(emptyPath ? basePathLength : basePathLength - 1);
+		}
+	}
+
+	private static void mergeInto(AbstractListTag<Tag> target, AbstractListTag<Tag> additions, MergeModeMatcher matcher, MergeModeMatcher.Node node, StringBuilder path) {
+		if (additions == null) return;
+
+		int targetSize = target.size();
+		int additionsSize = additions.size();
+		int basePathLength = path == null ? 0 : path.length();
+
+		for (int i = 0; i < additions.size() && i < targetSize; i++) { // for all elements that exist in both
+			MergeModeMatcher.Node indexNode = MergeModeMatcher.stepIndex(node, i);
+			if (path != null) {
+				path.setLength(basePathLength);
+				path.append('[').append(i).append(']');
+			}
+
+			MergeMode mergeMode = matcher.getMergeMode(indexNode, path);
+
+			if (mergeMode == MergeMode.OVERWRITE || mergeMode == MergeMode.UPDATE) {
+				target.set(i, additions.get(i).copy());
+			} else if (mergeMode == MergeMode.MERGE) {
+				Tag targetTag = target.get(i);
+				Tag additionsTag = additions.get(i);
+
+				if (isCompound(targetTag) && isCompound(additionsTag)) {
+					mergeInto(asCompoundTag(targetTag), asCompoundTag(additionsTag), matcher, indexNode, path, false);
+				} else if (isList(targetTag) && isList(additionsTag)) {
+					mergeInto(asListTag(targetTag), asListTag(additionsTag), matcher, indexNode, path);
+				} else {
+					target.set(i, targetTag.copy());
+				}
+			} else if (mergeMode == MergeMode.APPEND) {
+				try {
+					target.add(additions.get(i).copy());
+				} catch (Exception e) {
+					NbtCrafting.logError("Can't append tag " + additions.get(i).asString() + " to list: " + target.asString());
+				}
+			}
+		}
+
+		for (int i = targetSize; i < additionsSize; i++) { // for any additional elements
+			if (path != null) {
+				path.setLength(basePathLength);
+				path.append('[').append(i).append(']');
+			}
+			MergeMode mergeMode = matcher.getMergeMode(MergeModeMatcher.stepIndex(node, i), path);
+			if (mergeMode != MergeMode.UPDATE) {
+				target.add(additions.get(i));
+			}
+		}
+
+		if (path != null) {
+			path.setLength(basePathLength);
+		}
+	}
+
 	public static MergeMode getMergeMode(Collection<Pair<Pattern, MergeMode>> mergeModes, String path) {
 		for (Pair<Pattern, MergeMode> entry : mergeModes) {
 			if (entry.getFirst().matcher(path).matches()) {
@@ -486,11 +613,186 @@ public class NbtUtil {
 		}
 	}
 
+	/**
+	 * Converts json to NBT.
+	 * Numbers that have been created with a specific type keep it, parsed numbers get the smallest type that fits them.
+	 * Arrays of bytes, ints or longs become the respective array tags.
+	 *
+	 * @param jsonElement the json to convert
+	 * @return the resulting tag
+	 */
 	public static Tag asTag(JsonElement jsonElement) {
-		return Dynamic.convert(BetterJsonOps.INSTANCE, NbtOps.INSTANCE, jsonElement);
+		if (jsonElement.isJsonObject()) {
+			CompoundTag compoundTag = new CompoundTag();
+			for (Map.Entry<String, JsonElement> entry : jsonElement.getAsJsonObject().entrySet()) {
+				compoundTag.put(entry.getKey(), asTag(entry.getValue()));
+			}
+			return compoundTag;
+		} else if (jsonElement.isJsonArray()) {
+			return arrayAsTag(jsonElement.getAsJsonArray());
+		} else if (jsonElement.isJsonNull()) {
+			return EndTag.INSTANCE;
+		}
+		JsonPrimitive primitive = jsonElement.getAsJsonPrimitive();
+		if (primitive.isString()) {
+			return StringTag.of(primitive.getAsString());
+		} else if (primitive.isBoolean()) {
+			return ByteTag.of(primitive.getAsBoolean());
+		}
+		return asNumberTag(primitive);
 	}
 
+	private static Tag arrayAsTag(JsonArray jsonArray) {
+		int size = jsonArray.size();
+		if (size == 0) {
+			return new ListTag();
+		}
+		Tag first = asTag(jsonArray.get(0));
+		if (first instanceof ByteTag) {
+			byte[] values = new byte[size];
+			values[0] = ((ByteTag) first).getByte();
+			for (int i = 1; i < size; i++) {
+				values[i] = ((ByteTag) asTag(jsonArray.get(i))).getByte();
+			}
+			return new ByteArrayTag(values);
+		} else if (first instanceof IntTag) {
+			int[] values = new int[size];
+			values[0] = ((IntTag) first).getInt();
+			for (int i = 1; i < size; i++) {
+				values[i] = ((IntTag) asTag(jsonArray.get(i))).getInt();
+			}
+			return new IntArrayTag(values);
+		} else if (first instanceof LongTag) {
+			long[] values = new long[size];
+			values[0] = ((LongTag) first).getLong();
+			for (int i = 1; i < size; i++) {
+				values[i] = ((LongTag) asTag(jsonArray.get(i))).getLong();
+			}
+			return new LongArrayTag(values);
+		}
+		ListTag listTag = new ListTag();
+		for (int i = 0; i < size; i++) {
+			Tag tag = i == 0 ? first : asTag(jsonArray.get(i));
+			if (!(tag instanceof EndTag)) {
+				listTag.add(tag);
+			}
+		}
+		return listTag;
+	}
+
+	private static Tag asNumberTag(JsonPrimitive primitive) {
+		Number number = primitive.getAsNumber();
+		switch (NumberUtil.getType(number)) {
+			case NumberUtil.INTEGER:
+				return IntTag.of(number.intValue());
+			case NumberUtil.DOUBlE:
+				return DoubleTag.of(number.doubleValue());
+			case NumberUtil.BYTE:
+				return ByteTag.of(number.byteValue());
+			case NumberUtil.SHORT:
+				return ShortTag.of(number.shortValue());
+			case NumberUtil.LONG:
+				return LongTag.of(number.longValue());
+			case NumberUtil.FLOAT:
+				return FloatTag.of(number.floatValue());
+		}
+
+		// parsed numbers, plain integers are by far the most common
+		String string = number.toString();
+		if (isPlainInteger(string)) {
+			return asIntegralTag(Long.parseLong(string));
+		}
+		BigDecimal value = primitive.getAsBigDecimal();
+		try {
+			return asIntegralTag(value.longValueExact());
+		} catch (ArithmeticException e) {
+			double doubleValue = value.doubleValue();
+			if ((float) doubleValue == doubleValue) {
+				return FloatTag.of((float) doubleValue);
+			}
+			return DoubleTag.of(doubleValue);
+		}
+	}
+
+	private static boolean isPlainInteger(String string) {
+		int start = string.startsWith("-") ? 1 : 0;
+		// shorter than Long.MAX_VALUE, so it can't overflow
+		if (string.length() <= start || string.length() - start > 18) {
+			return false;
+		}
+		for (int i = start; i < string.length(); i++) {
+			char c = string.charAt(i);
+			if (c < '0' || c > '9') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static Tag asIntegralTag(long value) {
+		if ((byte) value == value) {
+			return ByteTag.of((byte) value);
+		} else if ((short) value == value) {
+			return ShortTag.of((short) value);
+		} else if ((int) value == value) {
+			return IntTag.of((int) value);
+		}
+		return LongTag.of(value);
+	}
+
+	/**
+	 * Converts NBT to json, numbers keep their type.
+	 *
+	 * @param tag the tag to convert
+	 * @return the resulting json
+	 */
 	public static JsonElement toJson(Tag tag) {
-		return Dynamic.convert(NbtOps.INSTANCE, BetterJsonOps.INSTANCE, tag);
+		if (tag instanceof CompoundTag) {
+			JsonObject jsonObject = new JsonObject();
+			CompoundTag compoundTag = (CompoundTag) tag;
+			for (String key : compoundTag.getKeys()) {
+				jsonObject.add(key, toJson(compoundTag.get(key)));
+			}
+			return jsonObject;
+		} else if (tag instanceof StringTag) {
+			return new JsonPrimitive(tag.asString());
+		} else if (tag instanceof ByteTag) {
+			return new JsonPrimitive(((ByteTag) tag).getByte());
+		} else if (tag instanceof IntTag) {
+			return new JsonPrimitive(((IntTag) tag).getInt());
+		} else if (tag instanceof DoubleTag) {
+			return new JsonPrimitive(((DoubleTag) tag).getDouble());
+		} else if (tag instanceof ShortTag) {
+			return new JsonPrimitive(((ShortTag) tag).getShort());
+		} else if (tag instanceof LongTag) {
+			return new JsonPrimitive(((LongTag) tag).getLong());
+		} else if (tag instanceof FloatTag) {
+			return new JsonPrimitive(((FloatTag) tag).getFloat());
+		} else if (tag instanceof ListTag) {
+			JsonArray jsonArray = new JsonArray();
+			for (Tag element : (ListTag) tag) {
+				jsonArray.add(toJson(element));
+			}
+			return jsonArray;
+		} else if (tag instanceof ByteArrayTag) {
+			JsonArray jsonArray = new JsonArray();
+			for (byte value : ((ByteArrayTag) tag).getByteArray()) {
+				jsonArray.add(new JsonPrimitive(value));
+			}
+			return jsonArray;
+		} else if (tag instanceof IntArrayTag) {
+			JsonArray jsonArray = new JsonArray();
+			for (int value : ((IntArrayTag) tag).getIntArray()) {
+				jsonArray.add(new JsonPrimitive(value));
+			}
+			return jsonArray;
+		} else if (tag instanceof LongArrayTag) {
+			JsonArray jsonArray = new JsonArray();
+			for (long value : ((LongArrayTag) tag).getLongArray()) {
+				jsonArray.add(new JsonPrimitive(value));
+			}
+			return jsonArray;
+		}
+		return JsonNull.INSTANCE;
 	}
 }
@@ -24,6 +24,8 @@ import net.minecraft.inventory.Inventory;
 import net.minecraft.recipe.Ingredient;
 import net.minecraft.recipe.Recipe;
 
+import de.siphalor.nbtcrafting.dollar.DollarReferenceFrame;
+
 /**
  * An interface to use in exchange of {@link Recipe} which provides base functions used for remainder computation.
  *
@@ -57,4 +59,18 @@ public interface NBTCRecipe<I extends Inventory> extends Recipe<I> {
 	default Map<String, Object> buildDollarReference(I inv, int[] ingredientToStackResolution) {
 		return buildDollarReference(inv);
 	}
+
+	/**
+	 * Fills the given frame with the references used for dollar computation.
+	 * This is the method that recipes should override: it is what Nbt Crafting calls when crafting and computing remainders.
+	 * Overriding it allows to write the references directly, without building an intermediate map.
+	 * The built-in base recipe classes implement it directly, but still fall back to {@link #buildDollarReference(Inventory, int[])}
+	 * when a subclass overrides one of the map based methods.
+	 * @param inv the inventory for that this method is being called
+	 * @param ingredientToStackResolution An array which resolves the ingredient indexes from {@link #getIngredients()} to the stacks in the inventory.
+	 * @param frame an empty frame to put the references into
+	 */
+	default void fillDollarReference(I inv, int[] ingredientToStackResolution, DollarReferenceFrame frame) {
+		frame.putAll(buildDollarReference(inv, ingredientToStackResolution));
+	}
 }
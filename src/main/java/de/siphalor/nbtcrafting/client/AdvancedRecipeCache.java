@@ -0,0 +1,149 @@
+/*
+ * Copyright 2020-2022 Siphalor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package de.siphalor.nbtcrafting.client;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.fabricmc.loader.api.FabricLoader;
+
+import de.siphalor.nbtcrafting.NbtCrafting;
+import de.siphalor.nbtcrafting.network.AdvancedRecipeSync;
+
+/**
+ * Stores the last advanced recipe chunks received from each server on disk.
+ * <p>
+ * A cache file consists of the hash of the chunks followed by the length prefixed chunks.
+ */
+public class AdvancedRecipeCache {
+	private static final Path CACHE_DIR = FabricLoader.getInstance().getGameDir().resolve(".cache").resolve(NbtCrafting.MOD_ID);
+
+	/**
+	 * Loads the cached chunks for the given server.
+	 *
+	 * @param serverAddress the address of the server
+	 * @param hash          the hash of the chunks that the server offered
+	 * @return the chunks or <code>null</code> if there are no matching chunks in the cache
+	 */
+	public static List<ByteBuf> load(String serverAddress, long hash) {
+		Path path = getPath(serverAddress);
+		if (!Files.isRegularFile(path)) {
+			return null;
+		}
+		ByteBuf data;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			// check the hash first, so that outdated files aren't read any further
+			ByteBuffer header = ByteBuffer.allocate(Long.BYTES);
+			while (header.hasRemaining()) {
+				if (channel.read(header) < 0) {
+					return null;
+				}
+			}
+			header.flip();
+			if (header.getLong() != hash) {
+				return null;
+			}
+			// the chunks are read to the heap instead of being mapped:
+			// a mapping would keep the file open until it's garbage collected, so that it couldn't be replaced on Windows
+			long size = channel.size() - Long.BYTES;
+			if (size > Integer.MAX_VALUE) {
+				return null;
+			}
+			ByteBuffer buffer = ByteBuffer.allocate((int) size);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer) < 0) {
+					return null;
+				}
+			}
+			buffer.flip();
+			data = Unpooled.wrappedBuffer(buffer);
+		} catch (IOException e) {
+			NbtCrafting.logWarn("Failed to read advanced recipe cache " + path + ": " + e);
+			return null;
+		}
+
+		List<ByteBuf> chunks = new ArrayList<>();
+		long actualHash = AdvancedRecipeSync.HASH_SEED;
+		while (data.isReadable()) {
+			if (data.readableBytes() < Integer.BYTES) {
+				return null;
+			}
+			int length = data.readInt();
+			if (length < 0 || data.readableBytes() < length) {
+				return null;
+			}
+			ByteBuf chunk = data.readSlice(length);
+			actualHash = AdvancedRecipeSync.hash(chunk, actualHash);
+			chunks.add(chunk);
+		}
+		if (actualHash != hash) {
+			NbtCrafting.logWarn("Advanced recipe cache " + path + " is corrupted");
+			return null;
+		}
+		return chunks;
+	}
+
+	/**
+	 * Replaces the cached chunks for the given server.
+	 *
+	 * @param serverAddress the address of the server
+	 * @param hash          the hash of the chunks
+	 * @param chunks        the complete chunks, including their headers
+	 */
+	public static void store(String serverAddress, long hash, List<byte[]> chunks) {
+		Path path = getPath(serverAddress);
+		try {
+			Files.createDirectories(CACHE_DIR);
+			Path tempPath = Files.createTempFile(CACHE_DIR, path.getFileName().toString(), ".tmp");
+			try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+				ByteBuffer header = ByteBuffer.allocate(Long.BYTES);
+				header.putLong(hash).flip();
+				writeFully(channel, header);
+				for (byte[] chunk : chunks) {
+					ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+					length.putInt(chunk.length).flip();
+					writeFully(channel, length);
+					writeFully(channel, ByteBuffer.wrap(chunk));
+				}
+			}
+			Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			NbtCrafting.logWarn("Failed to write advanced recipe cache " + path + ": " + e);
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	private static Path getPath(String serverAddress) {
+		return CACHE_DIR.resolve(serverAddress.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9.-]", "_") + ".bin");
+	}
+}
@@ -17,11 +17,19 @@
 
 package de.siphalor.nbtcrafting.client;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import com.google.common.collect.ImmutableMap;
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import net.fabricmc.api.ClientModInitializer;
 import net.fabricmc.fabric.api.client.networking.v1.ClientLoginNetworking;
@@ -31,6 +39,7 @@ import net.fabricmc.fabric.api.networking.v1.PacketSender;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.gui.screen.ingame.AnvilScreen;
 import net.minecraft.client.network.ClientPlayNetworkHandler;
+import net.minecraft.client.options.ServerEntry;
 import net.minecraft.recipe.Recipe;
 import net.minecraft.recipe.RecipeManager;
 import net.minecraft.recipe.RecipeSerializer;
@@ -42,9 +51,27 @@ import net.minecraft.util.registry.Registry;
 import de.siphalor.nbtcrafting.NbtCrafting;
 import de.siphalor.nbtcrafting.mixin.RecipeManagerAccessor;
 import de.siphalor.nbtcrafting.mixin.client.AnvilScreenAccessor;
+import de.siphalor.nbtcrafting.network.AdvancedRecipeSync;
+import de.siphalor.nbtcrafting.network.SyncDictionary;
+import de.siphalor.nbtcrafting.util.duck.IRecipeManager;
 
 public class NbtCraftingClient implements ClientModInitializer {
 	public static boolean sentModPresent = false;
+	private static final ExecutorService SYNC_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "Nbt Crafting Client Recipe Sync");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private static volatile int serverProtocolVersion = 0;
+	// the address that the cached recipes are stored for, null for integrated servers
+	private static volatile String serverAddress = null;
+	// only accessed on the sync thread
+	private static List<Recipe<?>> pendingAdvancedRecipes = new ArrayList<>();
+	// the raw chunks of the current synchronization to store in the cache, only accessed on the sync thread
+	private static List<byte[]> pendingChunks = new ArrayList<>();
+	// the advanced recipes of the last complete generation, only accessed on the sync thread
+	private static Map<Identifier, Recipe<?>> syncedAdvancedRecipes = new HashMap<>();
+	private static long syncedGeneration = AdvancedRecipeSync.UNKNOWN_GENERATION;
 
 	public static void sendModPresent() {
 		PacketByteBuf buffer = new PacketByteBuf(Unpooled.buffer());
@@ -55,7 +82,20 @@ public class NbtCraftingClient implements ClientModInitializer {
 	@Override
 	public void onInitializeClient() {
 		ClientLoginNetworking.registerGlobalReceiver(NbtCrafting.PRESENCE_CHANNEL, (client, handler, buf, listenerAdder) -> {
-			return CompletableFuture.completedFuture(new PacketByteBuf(Unpooled.buffer()));
+			// older servers send an empty query
+			serverProtocolVersion = buf.isReadable() ? buf.readVarInt() : 0;
+			ServerEntry serverEntry = client.getCurrentServerEntry();
+			serverAddress = serverEntry == null ? null : serverEntry.address;
+			// drop anything left over from an incomplete sync on the previous server
+			SYNC_EXECUTOR.execute(() -> {
+				pendingAdvancedRecipes = new ArrayList<>();
+				pendingChunks = new ArrayList<>();
+				syncedAdvancedRecipes = new HashMap<>();
+				syncedGeneration = AdvancedRecipeSync.UNKNOWN_GENERATION;
+			});
+			PacketByteBuf response = new PacketByteBuf(Unpooled.buffer());
+			response.writeVarInt(AdvancedRecipeSync.PROTOCOL_VERSION);
+			return CompletableFuture.completedFuture(response);
 		});
 
 		ClientSidePacketRegistry.INSTANCE.register(NbtCrafting.UPDATE_ANVIL_TEXT_S2C_PACKET_ID, (packetContext, packetByteBuf) -> {
@@ -68,38 +108,195 @@ public class NbtCraftingClient implements ClientModInitializer {
 		ClientPlayNetworking.registerGlobalReceiver(NbtCrafting.UPDATE_ADVANCED_RECIPES_PACKET_ID, NbtCraftingClient::receiveAdvancedRecipePacket);
 	}
 
-	private static synchronized void receiveAdvancedRecipePacket(MinecraftClient client, ClientPlayNetworkHandler handler, PacketByteBuf buf, PacketSender responseSender) {
-		RecipeManager recipeManager = handler.getRecipeManager();
-		Map<RecipeType<?>, Map<Identifier, Recipe<?>>> recipeMap = ((RecipeManagerAccessor) recipeManager).getRecipes();
-		recipeMap = new HashMap<>(recipeMap);
+	private static void receiveAdvancedRecipePacket(MinecraftClient client, ClientPlayNetworkHandler handler, PacketByteBuf buf, PacketSender responseSender) {
+		// decode on the sync thread, the buffer gets released after this method returns
+		PacketByteBuf copy = new PacketByteBuf(buf.copy());
+		SYNC_EXECUTOR.execute(() -> {
+			try {
+				decodeAdvancedRecipePacket(client, handler, copy);
+			} catch (Throwable e) {
+				NbtCrafting.logError("Failed to decode advanced recipes: " + e);
+				e.printStackTrace();
+			} finally {
+				copy.release();
+			}
+		});
+	}
+
+	/**
+	 * Decodes a chunk of advanced recipes into the staging list, only called on the sync thread.
+	 */
+	private static void decodeAdvancedRecipePacket(MinecraftClient client, ClientPlayNetworkHandler handler, PacketByteBuf buf) {
+		int header = buf.readVarInt();
+		if (header == AdvancedRecipeSync.END_HEADER) {
+			long generation = buf.isReadable() ? buf.readVarLong() : AdvancedRecipeSync.UNKNOWN_GENERATION;
+			if (generation != AdvancedRecipeSync.UNKNOWN_GENERATION && serverAddress != null && serverProtocolVersion >= 3) {
+				long hash = AdvancedRecipeSync.HASH_SEED;
+				for (byte[] chunk : pendingChunks) {
+					hash = AdvancedRecipeSync.hash(Unpooled.wrappedBuffer(chunk), hash);
+				}
+				AdvancedRecipeCache.store(serverAddress, hash, pendingChunks);
+			}
+			completeAdvancedRecipeSync(client, handler, generation);
+			return;
+		} else if (header == AdvancedRecipeSync.DELTA_HEADER) {
+			decodeAdvancedRecipeDelta(client, handler, buf);
+			return;
+		} else if (header == AdvancedRecipeSync.OFFER_HEADER) {
+			decodeAdvancedRecipeOffer(client, handler, buf);
+			return;
+		}
+
+		if (header == AdvancedRecipeSync.CHUNK_HEADER || header == AdvancedRecipeSync.DICTIONARY_CHUNK_HEADER) {
+			if (serverAddress != null && serverProtocolVersion >= 3) {
+				byte[] chunk = new byte[buf.writerIndex()];
+				buf.getBytes(0, chunk);
+				pendingChunks.add(chunk);
+			}
+			readChunk(buf, header == AdvancedRecipeSync.DICTIONARY_CHUNK_HEADER);
+		} else { // Legacy support
+			NbtCrafting.advancedIngredientSerializationEnabled.set(true);
+			try {
+				for (int i = 0; i < header; i++) {
+					pendingAdvancedRecipes.add(readRecipe(buf));
+				}
+			} finally {
+				NbtCrafting.advancedIngredientSerializationEnabled.set(false);
+			}
+		}
 
+		// older servers don't send end markers
+		if (serverProtocolVersion < 1) {
+			applyPendingAdvancedRecipes(client, handler);
+		}
+	}
+
+	private static void readChunk(PacketByteBuf buf, boolean hasDictionary) {
 		NbtCrafting.advancedIngredientSerializationEnabled.set(true);
-		int recipeCount = buf.readVarInt();
-		if (recipeCount == 0) {
+		if (hasDictionary) {
+			SyncDictionary.setReader(SyncDictionary.Reader.read(buf));
+		}
+		try {
 			while (buf.isReadable()) {
-				readRecipe(buf, recipeMap);
+				pendingAdvancedRecipes.add(readRecipe(buf));
 			}
-		} else { // Legacy support
-			for (int i = 0; i < recipeCount; i++) {
-				readRecipe(buf, recipeMap);
+		} finally {
+			NbtCrafting.advancedIngredientSerializationEnabled.set(false);
+			SyncDictionary.setReader(null);
+		}
+	}
+
+	/**
+	 * Loads the offered chunks from the cache or requests them from the server, only called on the sync thread.
+	 */
+	private static void decodeAdvancedRecipeOffer(MinecraftClient client, ClientPlayNetworkHandler handler, PacketByteBuf buf) {
+		long generation = buf.readVarLong();
+		long hash = buf.readLong();
+		List<ByteBuf> chunks = serverAddress == null ? null : AdvancedRecipeCache.load(serverAddress, hash);
+		if (chunks == null) {
+			requestAdvancedRecipes(client);
+			return;
+		}
+
+		for (ByteBuf chunk : chunks) {
+			PacketByteBuf chunkBuf = new PacketByteBuf(chunk);
+			int header = chunkBuf.readVarInt();
+			if (header != AdvancedRecipeSync.CHUNK_HEADER && header != AdvancedRecipeSync.DICTIONARY_CHUNK_HEADER) {
+				throw new IllegalStateException("Invalid chunk in advanced recipe cache");
 			}
+			readChunk(chunkBuf, header == AdvancedRecipeSync.DICTIONARY_CHUNK_HEADER);
 		}
-		NbtCrafting.advancedIngredientSerializationEnabled.set(false);
+		NbtCrafting.logDebug("Loaded " + pendingAdvancedRecipes.size() + " advanced recipes from the cache");
+		completeAdvancedRecipeSync(client, handler, generation);
+	}
 
-		((RecipeManagerAccessor) recipeManager).setRecipes(ImmutableMap.copyOf(recipeMap));
+	private static void completeAdvancedRecipeSync(MinecraftClient client, ClientPlayNetworkHandler handler, long generation) {
+		syncedGeneration = generation;
+		syncedAdvancedRecipes = new HashMap<>();
+		for (Recipe<?> recipe : pendingAdvancedRecipes) {
+			syncedAdvancedRecipes.put(recipe.getId(), recipe);
+		}
+		pendingChunks = new ArrayList<>();
+		applyPendingAdvancedRecipes(client, handler);
+	}
+
+	private static void requestAdvancedRecipes(MinecraftClient client) {
+		client.execute(() -> ClientPlayNetworking.send(NbtCrafting.REQUEST_ADVANCED_RECIPES_C2S_PACKET_ID, new PacketByteBuf(Unpooled.buffer())));
+	}
+
+	/**
+	 * Applies the changes since the last generation, only called on the sync thread.
+	 */
+	private static void decodeAdvancedRecipeDelta(MinecraftClient client, ClientPlayNetworkHandler handler, PacketByteBuf buf) {
+		long baseGeneration = buf.readVarLong();
+		long generation = buf.readVarLong();
+		if (baseGeneration == AdvancedRecipeSync.UNKNOWN_GENERATION || baseGeneration != syncedGeneration) {
+			NbtCrafting.logWarn("Received advanced recipe changes for an unknown state, requesting all advanced recipes");
+			syncedGeneration = AdvancedRecipeSync.UNKNOWN_GENERATION;
+			requestAdvancedRecipes(client);
+			return;
+		}
+
+		int removedCount = buf.readVarInt();
+		for (int i = 0; i < removedCount; i++) {
+			syncedAdvancedRecipes.remove(buf.readIdentifier());
+		}
+		NbtCrafting.advancedIngredientSerializationEnabled.set(true);
+		// servers with dictionaries always send them to this client version
+		if (serverProtocolVersion >= 4) {
+			SyncDictionary.setReader(SyncDictionary.Reader.read(buf));
+		}
+		try {
+			while (buf.isReadable()) {
+				Recipe<?> recipe = readRecipe(buf);
+				syncedAdvancedRecipes.put(recipe.getId(), recipe);
+			}
+		} finally {
+			NbtCrafting.advancedIngredientSerializationEnabled.set(false);
+			SyncDictionary.setReader(null);
+		}
+		syncedGeneration = generation;
+
+		// the vanilla synchronization has replaced all recipes, so the unchanged advanced recipes have to be applied again
+		applyAdvancedRecipes(client, handler, new ArrayList<>(syncedAdvancedRecipes.values()));
+	}
+
+	private static void applyPendingAdvancedRecipes(MinecraftClient client, ClientPlayNetworkHandler handler) {
+		List<Recipe<?>> recipes = pendingAdvancedRecipes;
+		pendingAdvancedRecipes = new ArrayList<>();
+		applyAdvancedRecipes(client, handler, recipes);
+	}
+
+	private static void applyAdvancedRecipes(MinecraftClient client, ClientPlayNetworkHandler handler, Collection<Recipe<?>> recipes) {
+		// applied on the main thread, after any vanilla recipe synchronization that has been received before
+		client.execute(() -> {
+			RecipeManager recipeManager = handler.getRecipeManager();
+			Map<RecipeType<?>, Map<Identifier, Recipe<?>>> recipeMap = new HashMap<>(((RecipeManagerAccessor) recipeManager).getRecipes());
+			Set<RecipeType<?>> copiedTypes = new HashSet<>();
+			for (Recipe<?> recipe : recipes) {
+				Map<Identifier, Recipe<?>> recipesOfType = recipeMap.get(recipe.getType());
+				if (copiedTypes.add(recipe.getType())) {
+					recipesOfType = recipesOfType == null ? new HashMap<>() : new HashMap<>(recipesOfType);
+					recipeMap.put(recipe.getType(), recipesOfType);
+				}
+				recipesOfType.put(recipe.getId(), recipe);
+			}
+
+			((RecipeManagerAccessor) recipeManager).setRecipes(ImmutableMap.copyOf(recipeMap));
+			((IRecipeManager) recipeManager).nbtCrafting$invalidateRecipeIndex();
+		});
 	}
 
-	private static void readRecipe(PacketByteBuf buf, Map<RecipeType<?>, Map<Identifier, Recipe<?>>> recipes) {
-		RecipeSerializer<?> serializer = Registry.RECIPE_SERIALIZER.get(buf.readIdentifier());
+	private static Recipe<?> readRecipe(PacketByteBuf buf) {
+		Identifier serializerId = buf.readIdentifier();
+		RecipeSerializer<?> serializer = Registry.RECIPE_SERIALIZER.get(serializerId);
 		if (serializer == null) {
-			throw new IllegalStateException("Unknown recipe serializer on advanced recipe sync: " + buf.readIdentifier());
+			throw new IllegalStateException("Unknown recipe serializer on advanced recipe sync: " + serializerId);
 		}
 
 		Identifier id = buf.readIdentifier();
 
-		Recipe<?> recipe = serializer.read(id, buf);
-		Map<Identifier, Recipe<?>> recipeType = recipes.computeIfAbsent(recipe.getType(), rt -> new HashMap<>());
-		recipeType.put(id, recipe);
+		return serializer.read(id, buf);
 	}
 
 	public static RecipeManager getClientRecipeManager() {
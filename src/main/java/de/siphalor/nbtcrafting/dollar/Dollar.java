@@ -17,7 +17,10 @@
 
 package de.siphalor.nbtcrafting.dollar;
 
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.Tag;
@@ -27,9 +30,22 @@ import de.siphalor.nbtcrafting.dollar.part.DollarPart;
 
 public abstract class Dollar {
 	protected DollarPart expression;
+	private final Set<String> references;
 
 	protected Dollar(DollarPart expression) {
 		this.expression = expression;
+		Set<String> references = new HashSet<>();
+		expression.collectReferences(references);
+		this.references = Collections.unmodifiableSet(references);
+	}
+
+	/**
+	 * Gets the names of all references that this dollar may read.
+	 *
+	 * @return an unmodifiable set of reference names
+	 */
+	public Set<String> getReferences() {
+		return references;
 	}
 
 	protected Tag evaluate(Map<String, Object> references) throws DollarEvaluationException {
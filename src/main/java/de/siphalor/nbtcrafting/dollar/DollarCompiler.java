@@ -0,0 +1,246 @@
+/*
+ * Copyright 2020-2022 Siphalor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package de.siphalor.nbtcrafting.dollar;
+
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.Tag;
+
+import de.siphalor.nbtcrafting.api.nbt.NbtUtil;
+import de.siphalor.nbtcrafting.dollar.part.CompiledDollarPart;
+import de.siphalor.nbtcrafting.dollar.part.CompiledDollarPart.Evaluator;
+import de.siphalor.nbtcrafting.dollar.part.ConstantDollarPart;
+import de.siphalor.nbtcrafting.dollar.part.DollarPart;
+import de.siphalor.nbtcrafting.dollar.part.TemporaryDollarPart;
+import de.siphalor.nbtcrafting.dollar.part.TemporaryScopeDollarPart;
+import de.siphalor.nbtcrafting.dollar.part.operator.*;
+import de.siphalor.nbtcrafting.dollar.part.unary.ReferenceDollarPart;
+import de.siphalor.nbtcrafting.dollar.part.unary.UnaryDollarOperator;
+
+/**
+ * Compiles optimized dollar expressions into trees of monomorphic lambdas.
+ * <ul>
+ *     <li>Every node gets its own evaluator, so there is no virtual dispatch over the node types and no generic child handling.</li>
+ *     <li>References read their bound slot from the frame directly.</li>
+ *     <li>Child accesses with a fixed key look up the compound without going through the generic operator.</li>
+ *     <li>Sums, differences and products take a primitive int lane when their operands are integers,
+ *     constant int operands are unboxed at compile time.</li>
+ * </ul>
+ * Operand types are only known on evaluation, so every specialized evaluator falls back to the interpreted operator for other types.
+ * Unknown parts, e.g. from other mods, are interpreted as well.
+ */
+public class DollarCompiler {
+	public static DollarPart compile(DollarPart dollarPart) {
+		if (dollarPart.isConstant() || dollarPart instanceof CompiledDollarPart) {
+			return dollarPart;
+		}
+		return new CompiledDollarPart(dollarPart, compileEvaluator(dollarPart));
+	}
+
+	private static Evaluator compileEvaluator(DollarPart dollarPart) {
+		if (dollarPart instanceof ConstantDollarPart) {
+			Object value = ((ConstantDollarPart) dollarPart).getValue();
+			return frame -> value;
+		} else if (dollarPart instanceof ReferenceDollarPart) {
+			return compileReference((ReferenceDollarPart) dollarPart);
+		} else if (dollarPart instanceof ChildDollarOperator) {
+			return compileChild((ChildDollarOperator) dollarPart);
+		} else if (dollarPart instanceof SumDollarOperator) {
+			return compileSum((SumDollarOperator) dollarPart);
+		} else if (dollarPart instanceof DifferenceDollarOperator) {
+			return compileDifference((DifferenceDollarOperator) dollarPart);
+		} else if (dollarPart instanceof ProductDollarOperator) {
+			return compileProduct((ProductDollarOperator) dollarPart);
+		} else if (dollarPart instanceof BinaryDollarOperator) {
+			BinaryDollarOperator operator = (BinaryDollarOperator) dollarPart;
+			Evaluator first = compileEvaluator(operator.getFirst());
+			Evaluator second = compileEvaluator(operator.getSecond());
+			return frame -> operator.apply(first.evaluate(frame), second.evaluate(frame));
+		} else if (dollarPart instanceof ConditionDollarOperator) {
+			ConditionDollarOperator operator = (ConditionDollarOperator) dollarPart;
+			Evaluator condition = compileEvaluator(operator.getCondition());
+			Evaluator thenPart = compileEvaluator(operator.getThenPart());
+			Evaluator elsePart = compileEvaluator(operator.getElsePart());
+			return frame -> DollarUtil.asBoolean(condition.evaluate(frame)) ? thenPart.evaluate(frame) : elsePart.evaluate(frame);
+		} else if (dollarPart instanceof CastDollarOperator) {
+			return compileCast((CastDollarOperator) dollarPart);
+		} else if (dollarPart instanceof UnaryDollarOperator) {
+			UnaryDollarOperator operator = (UnaryDollarOperator) dollarPart;
+			Evaluator operand = compileEvaluator(operator.getDollarPart());
+			return frame -> operator.evaluate(operand.evaluate(frame));
+		} else if (dollarPart instanceof TemporaryScopeDollarPart) {
+			TemporaryScopeDollarPart scope = (TemporaryScopeDollarPart) dollarPart;
+			int count = scope.getTemporaries().length;
+			Evaluator body = compileEvaluator(scope.getBody());
+			return frame -> {
+				int handle = frame.pushTemporaries(count);
+				try {
+					return body.evaluate(frame);
+				} finally {
+					frame.popTemporaries(handle);
+				}
+			};
+		} else if (dollarPart instanceof TemporaryDollarPart) {
+			TemporaryDollarPart temporary = (TemporaryDollarPart) dollarPart;
+			int index = temporary.getIndex();
+			Evaluator inner = compileEvaluator(temporary.getDollarPart());
+			return frame -> {
+				if (frame.isTemporarySet(index)) {
+					return frame.getTemporary(index);
+				}
+				Object value = inner.evaluate(frame);
+				frame.setTemporary(index, value);
+				return value;
+			};
+		}
+		return dollarPart::evaluate;
+	}
+
+	private static Evaluator compileReference(ReferenceDollarPart reference) {
+		int slot = reference.getSlot();
+		String key = reference.getKey();
+		return frame -> {
+			Object value = frame.get(slot);
+			if (value == null) {
+				throw new DollarEvaluationException("Could not resolve reference to nbt tag '" + key + "'");
+			}
+			return value;
+		};
+	}
+
+	private static Evaluator compileChild(ChildDollarOperator operator) {
+		Evaluator parent = compileEvaluator(operator.getFirst());
+		Object keyValue = getConstantValue(operator.getSecond());
+		if (keyValue instanceof String) {
+			String key = (String) keyValue;
+			return frame -> {
+				Object value = parent.evaluate(frame);
+				if (value instanceof CompoundTag) {
+					Tag tag = ((CompoundTag) value).get(key);
+					return tag == null ? null : NbtUtil.toDollarValue(tag);
+				}
+				return operator.apply(value, key);
+			};
+		}
+		Evaluator child = compileEvaluator(operator.getSecond());
+		return frame -> operator.apply(parent.evaluate(frame), child.evaluate(frame));
+	}
+
+	private static Evaluator compileSum(SumDollarOperator operator) {
+		Evaluator first = compileEvaluator(operator.getFirst());
+		Object constant = getConstantValue(operator.getSecond());
+		if (constant instanceof Integer) {
+			int value = (Integer) constant;
+			return frame -> {
+				Object a = first.evaluate(frame);
+				if (a instanceof Integer) {
+					return (Integer) a + value;
+				}
+				return operator.apply(a, constant);
+			};
+		}
+		Evaluator second = compileEvaluator(operator.getSecond());
+		return frame -> {
+			Object a = first.evaluate(frame);
+			Object b = second.evaluate(frame);
+			if (a instanceof Integer && b instanceof Integer) {
+				return (Integer) a + (Integer) b;
+			}
+			return operator.apply(a, b);
+		};
+	}
+
+	private static Evaluator compileDifference(DifferenceDollarOperator operator) {
+		Evaluator first = compileEvaluator(operator.getFirst());
+		Object constant = getConstantValue(operator.getSecond());
+		if (constant instanceof Integer) {
+			int value = (Integer) constant;
+			return frame -> {
+				Object a = first.evaluate(frame);
+				if (a instanceof Integer) {
+					return (Integer) a - value;
+				}
+				return operator.apply(a, constant);
+			};
+		}
+		Evaluator second = compileEvaluator(operator.getSecond());
+		return frame -> {
+			Object a = first.evaluate(frame);
+			Object b = second.evaluate(frame);
+			if (a instanceof Integer && b instanceof Integer) {
+				return (Integer) a - (Integer) b;
+			}
+			return operator.apply(a, b);
+		};
+	}
+
+	private static Evaluator compileProduct(ProductDollarOperator operator) {
+		Evaluator first = compileEvaluator(operator.getFirst());
+		Object constant = getConstantValue(operator.getSecond());
+		if (constant instanceof Integer) {
+			int value = (Integer) constant;
+			return frame -> {
+				Object a = first.evaluate(frame);
+				if (a instanceof Integer) {
+					return (Integer) a * value;
+				}
+				return operator.apply(a, constant);
+			};
+		}
+		Evaluator second = compileEvaluator(operator.getSecond());
+		return frame -> {
+			Object a = first.evaluate(frame);
+			Object b = second.evaluate(frame);
+			if (a instanceof Integer && b instanceof Integer) {
+				return (Integer) a * (Integer) b;
+			}
+			return operator.apply(a, b);
+		};
+	}
+
+	private static Evaluator compileCast(CastDollarOperator operator) {
+		Evaluator operand = compileEvaluator(operator.getDollarPart());
+		switch (operator.getTypeId()) {
+			case 'i':
+				return frame -> {
+					Object value = operand.evaluate(frame);
+					return value instanceof Number ? ((Number) value).intValue() : 0;
+				};
+			case 'l':
+				return frame -> {
+					Object value = operand.evaluate(frame);
+					return value instanceof Number ? ((Number) value).longValue() : 0L;
+				};
+			case 'd':
+				return frame -> {
+					Object value = operand.evaluate(frame);
+					return value instanceof Number ? ((Number) value).doubleValue() : 0D;
+				};
+			default:
+				int typeId = operator.getTypeId();
+				return frame -> CastDollarOperator.cast(operand.evaluate(frame), typeId);
+		}
+	}
+
+	private static Object getConstantValue(DollarPart dollarPart) {
+		if (dollarPart instanceof ConstantDollarPart) {
+			return ((ConstantDollarPart) dollarPart).getValue();
+		}
+		return null;
+	}
+}
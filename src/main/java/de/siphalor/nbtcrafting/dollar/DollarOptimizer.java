@@ -0,0 +1,138 @@
+/*
+ * Copyright 2020-2022 Siphalor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package de.siphalor.nbtcrafting.dollar;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import de.siphalor.nbtcrafting.NbtCrafting;
+import de.siphalor.nbtcrafting.dollar.part.DollarPart;
+import de.siphalor.nbtcrafting.dollar.part.TemporaryDollarPart;
+import de.siphalor.nbtcrafting.dollar.part.TemporaryScopeDollarPart;
+import de.siphalor.nbtcrafting.dollar.part.ValueDollarPart;
+import de.siphalor.nbtcrafting.dollar.part.operator.ConditionDollarOperator;
+
+/**
+ * Rewrites parsed dollar expressions so that they are cheaper to evaluate.
+ * <ul>
+ *     <li>Operators with only constant operands are folded into a single value.</li>
+ *     <li>Conditions with a constant condition are replaced by the taken branch.</li>
+ *     <li>Subexpressions that occur more than once are evaluated only once per evaluation.</li>
+ * </ul>
+ */
+public class DollarOptimizer {
+	public static DollarPart optimize(DollarPart dollarPart) {
+		DollarPart result = hoistCommonSubexpressions(fold(dollarPart));
+		if (NbtCrafting.isDebugLogEnabled() && result != dollarPart) {
+			NbtCrafting.logDebug("Optimized dollar expression " + dollarPart + " to " + result);
+		}
+		return result;
+	}
+
+	private static DollarPart fold(DollarPart dollarPart) {
+		DollarPart[] children = dollarPart.getChildren();
+		if (children.length == 0) {
+			return dollarPart;
+		}
+
+		DollarPart[] newChildren = null;
+		boolean constant = true;
+		for (int i = 0; i < children.length; i++) {
+			DollarPart child = fold(children[i]);
+			if (child != children[i]) {
+				if (newChildren == null) {
+					newChildren = children.clone();
+				}
+				newChildren[i] = child;
+			}
+			constant &= child.isConstant();
+		}
+		if (newChildren != null) {
+			dollarPart = dollarPart.withChildren(newChildren);
+			children = newChildren;
+		}
+
+		try {
+			if (dollarPart instanceof ConditionDollarOperator) {
+				if (children[0].isConstant()) {
+					return DollarUtil.asBoolean(children[0].evaluate(null)) ? children[1] : children[2];
+				}
+			} else if (constant) {
+				return ValueDollarPart.of(dollarPart.evaluate(null));
+			}
+		} catch (DollarEvaluationException | RuntimeException e) {
+			// Keep the operator, so that the error shows up on evaluation as before
+		}
+		return dollarPart;
+	}
+
+	private static DollarPart hoistCommonSubexpressions(DollarPart root) {
+		Map<DollarPart, Integer> counts = new HashMap<>();
+		countSubexpressions(root, counts);
+		if (counts.values().stream().allMatch(count -> count < 2)) {
+			return root;
+		}
+
+		Map<DollarPart, TemporaryDollarPart> temporaries = new LinkedHashMap<>();
+		DollarPart body = replaceSubexpressions(root, counts, temporaries);
+		return new TemporaryScopeDollarPart(body, temporaries.values().toArray(new TemporaryDollarPart[0]));
+	}
+
+	private static void countSubexpressions(DollarPart dollarPart, Map<DollarPart, Integer> counts) {
+		DollarPart[] children = dollarPart.getChildren();
+		if (children.length == 0) {
+			// References and constants are cheap enough on their own
+			return;
+		}
+		int count = counts.merge(dollarPart, 1, Integer::sum);
+		if (count == 1) {
+			// The children of repeated subexpressions only need to be counted once, as they get hoisted together
+			for (DollarPart child : children) {
+				countSubexpressions(child, counts);
+			}
+		}
+	}
+
+	private static DollarPart replaceSubexpressions(DollarPart dollarPart, Map<DollarPart, Integer> counts, Map<DollarPart, TemporaryDollarPart> temporaries) {
+		DollarPart[] children = dollarPart.getChildren();
+		if (children.length == 0) {
+			return dollarPart;
+		}
+		if (counts.get(dollarPart) >= 2) {
+			TemporaryDollarPart temporary = temporaries.get(dollarPart);
+			if (temporary == null) {
+				DollarPart inner = replaceChildren(dollarPart, children, counts, temporaries);
+				temporary = new TemporaryDollarPart(temporaries.size(), inner);
+				temporaries.put(dollarPart, temporary);
+			}
+			return temporary;
+		}
+		return replaceChildren(dollarPart, children, counts, temporaries);
+	}
+
+	private static DollarPart replaceChildren(DollarPart dollarPart, DollarPart[] children, Map<DollarPart, Integer> counts, Map<DollarPart, TemporaryDollarPart> temporaries) {
+		DollarPart[] newChildren = new DollarPart[children.length];
+		boolean changed = false;
+		for (int i = 0; i < children.length; i++) {
+			newChildren[i] = replaceSubexpressions(children[i], counts, temporaries);
+			changed |= newChildren[i] != children[i];
+		}
+		return changed ? dollarPart.withChildren(newChildren) : dollarPart;
+	}
+}
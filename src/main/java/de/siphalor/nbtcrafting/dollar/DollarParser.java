@@ -18,18 +18,18 @@
 package de.siphalor.nbtcrafting.dollar;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import com.google.common.collect.ImmutableMap;
-import com.mojang.datafixers.util.Pair;
 import net.minecraft.nbt.AbstractListTag;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.ListTag;
 import net.minecraft.nbt.Tag;
-import org.apache.commons.lang3.ArrayUtils;
 
 import de.siphalor.nbtcrafting.NbtCrafting;
 import de.siphalor.nbtcrafting.api.nbt.MergeMode;
+import de.siphalor.nbtcrafting.api.nbt.MergeModeMatcher;
 import de.siphalor.nbtcrafting.api.nbt.NbtIterator;
 import de.siphalor.nbtcrafting.api.nbt.NbtUtil;
 import de.siphalor.nbtcrafting.dollar.part.DollarPart;
@@ -65,21 +65,32 @@ public final class DollarParser {
 					new ConditionDollarOperator.Deserializer()
 			}
 	};
-	private final Stack<Integer> stopStack = new Stack<>();
-	private final String string;
-	private final int stringLength;
+	/**
+	 * Parsed expressions by their source, so that recipes with the same dollars share them.
+	 * This gets cleared on every reload, the recipes keep their expressions alive on their own.
+	 * Pooled expressions are evaluated concurrently by all recipes, threads and frames that share them,
+	 * so dollar parts must not write any state during evaluation.
+	 */
+	private static final Map<String, Optional<DollarPart>> EXPRESSION_POOL = new ConcurrentHashMap<>();
+
+	private int[] stopStack = new int[4];
+	private int stopStackSize = 0;
+	private final char[] chars;
+	private final int length;
 	private int currentIndex;
 
 	public DollarParser(String string) {
-		this.string = string;
-		this.stringLength = string.length();
+		this.chars = string.toCharArray();
+		this.length = chars.length;
 		this.currentIndex = -1;
 	}
 
 	public int eat() {
-		if (currentIndex++ >= stringLength)
+		if (++currentIndex >= length) {
+			currentIndex = length;
 			return -1;
-		return string.codePointAt(currentIndex);
+		}
+		return Character.codePointAt(chars, currentIndex);
 	}
 
 	public void skip() {
@@ -87,9 +98,29 @@ public final class DollarParser {
 	}
 
 	public int peek() {
-		if (currentIndex + 1 >= stringLength)
+		if (currentIndex + 1 >= length)
 			return -1;
-		return string.codePointAt(currentIndex + 1);
+		return Character.codePointAt(chars, currentIndex + 1);
+	}
+
+	/**
+	 * Gets the index of the character that will be returned by the next {@link #peek()} or {@link #eat()}.
+	 *
+	 * @return the index in the parsed string
+	 */
+	public int getPosition() {
+		return currentIndex + 1;
+	}
+
+	/**
+	 * Gets a slice of the parsed string.
+	 *
+	 * @param start the start index, inclusive
+	 * @param end   the end index, exclusive
+	 * @return the slice as a string
+	 */
+	public String slice(int start, int end) {
+		return new String(chars, start, end - start);
 	}
 
 	public static Dollar[] extractDollars(CompoundTag compoundTag, boolean remove) {
@@ -133,11 +164,11 @@ public final class DollarParser {
 			if (val.charAt(0) == '$') {
 				val = val.substring(1);
 			}
-			return parse(val).map(exp -> new MergeDollar(exp, path, Collections.emptyList()));
+			return parse(val).map(exp -> new MergeDollar(exp, path, MergeModeMatcher.EMPTY));
 		} else if (NbtUtil.isCompound(tag)) {
 			CompoundTag compound = NbtUtil.asCompoundTag(tag);
 			if (compound.contains("value", 8)) {
-				Collection<Pair<Pattern, MergeMode>> mergeModes = new LinkedList<>();
+				MergeModeMatcher.Builder mergeModes = new MergeModeMatcher.Builder();
 				if (compound.contains("paths", 10)) {
 					CompoundTag paths = compound.getCompound("paths");
 					for (String p : paths.getKeys()) {
@@ -145,16 +176,18 @@ public final class DollarParser {
 							//noinspection ConstantConditions
 							MergeMode mergeMode = MergeMode.valueOf(paths.get(p).asString().toUpperCase(Locale.ENGLISH));
 							if (p.startsWith("/") && p.endsWith("/")) {
-								mergeModes.add(Pair.of(Pattern.compile(Pattern.quote(path) + "\\.?" + p.substring(1, p.length() - 1)), mergeMode));
+								mergeModes.addPattern(Pattern.compile(Pattern.quote(path) + "\\.?" + p.substring(1, p.length() - 1)), mergeMode);
 							} else {
-								mergeModes.add(Pair.of(Pattern.compile(Pattern.quote(path) + "\\.?" + Pattern.quote(p)), mergeMode));
+								// literal paths are matched through a trie, the forms correspond to the pattern <path>\.?<p>
+								mergeModes.addLiteral(mergeMode, path + p, path + "." + p);
 							}
 						} catch (Exception e) {
 							NbtCrafting.logError("Unable to deduce dollar merge mode from tag: " + paths.get(p));
 						}
 					}
 				}
-				return parse(compound.getString("value")).map(exp -> new MergeDollar(exp, path, mergeModes));
+				MergeModeMatcher matcher = mergeModes.build();
+				return parse(compound.getString("value")).map(exp -> new MergeDollar(exp, path, matcher));
 			} else {
 				NbtCrafting.logError("The value field is required on dollar merge objects. Errored on " + tag.asString());
 			}
@@ -165,7 +198,20 @@ public final class DollarParser {
 	}
 
 	public static Optional<DollarPart> parse(String string) {
-		return Optional.ofNullable(new DollarParser(string).parse());
+		String source = string.trim();
+		Optional<DollarPart> expression = EXPRESSION_POOL.get(source);
+		if (expression == null) {
+			expression = Optional.ofNullable(new DollarParser(source).parse()).map(DollarOptimizer::optimize).map(DollarCompiler::compile);
+			Optional<DollarPart> pooled = EXPRESSION_POOL.putIfAbsent(source, expression);
+			if (pooled != null) {
+				expression = pooled;
+			}
+		}
+		return expression;
+	}
+
+	public static void clearExpressionPool() {
+		EXPRESSION_POOL.clear();
 	}
 
 	public DollarPart parse() {
@@ -178,11 +224,14 @@ public final class DollarParser {
 	}
 
 	public void pushStopStack(int stop) {
-		stopStack.push(stop);
+		if (stopStackSize == stopStack.length) {
+			stopStack = Arrays.copyOf(stopStack, stopStackSize * 2);
+		}
+		stopStack[stopStackSize++] = stop;
 	}
 
 	public void popStopStack() {
-		stopStack.pop();
+		stopStackSize--;
 	}
 
 	public DollarPart parse(int maxPriority) throws DollarDeserializationException {
@@ -198,7 +247,7 @@ public final class DollarParser {
 			}
 			if (peek == -1)
 				return dollarPart;
-			if (!stopStack.isEmpty() && stopStack.lastElement() == peek) {
+			if (stopStackSize > 0 && stopStack[stopStackSize - 1] == peek) {
 				return dollarPart;
 			}
 
@@ -245,22 +294,51 @@ public final class DollarParser {
 	}
 
 	public String readTo(int... stops) {
-		int character;
-		boolean escaped = false;
-		StringBuilder stringBuilder = new StringBuilder();
-		while (!ArrayUtils.contains(stops, character = eat())) {
-			if (character == -1)
-				return null;
+		int start = currentIndex + 1;
+		// Fast path: as long as there are no escapes, the result is just a slice of the input
+		for (int i = start; i < length; i++) {
+			char character = chars[i];
+			if (character == '\\') {
+				return readEscapedTo(start, i, stops);
+			}
+			if (isStop(character, stops)) {
+				currentIndex = i;
+				return slice(start, i);
+			}
+		}
+		currentIndex = length;
+		return null;
+	}
+
+	private String readEscapedTo(int start, int escapeIndex, int[] stops) {
+		StringBuilder stringBuilder = new StringBuilder(escapeIndex - start + 16);
+		stringBuilder.append(chars, start, escapeIndex - start);
+		boolean escaped = true;
+		for (int i = escapeIndex + 1; i < length; i++) {
+			char character = chars[i];
 			if (escaped) {
-				stringBuilder.append(Character.toChars(character));
+				stringBuilder.append(character);
 				escaped = false;
 			} else if (character == '\\') {
 				escaped = true;
+			} else if (isStop(character, stops)) {
+				currentIndex = i;
+				return stringBuilder.toString();
 			} else {
-				stringBuilder.append(Character.toChars(character));
+				stringBuilder.append(character);
+			}
+		}
+		currentIndex = length;
+		return null;
+	}
+
+	private static boolean isStop(char character, int[] stops) {
+		for (int stop : stops) {
+			if (stop == character) {
+				return true;
 			}
 		}
-		return stringBuilder.toString();
+		return false;
 	}
 
 	// Testing only
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2020-2022 Siphalor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package de.siphalor.nbtcrafting.dollar;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An array backed reference map for dollar evaluation.
+ * <p>
+ * Every reference name is bound to a global slot number once, when the expressions that read it are parsed
+ * (see {@link #bindSlot(String)}). Slots are never reassigned, so compiled references keep their slot
+ * and look up their value with a plain array access, without any hashing or per-frame state.
+ * Frames only allocate as many slots as the highest slot that has been set in them.
+ * Frames are meant to be reused, see {@link #acquire()} and {@link #release()}.
+ */
+public class DollarReferenceFrame extends AbstractMap<String, Object> {
+	private static final ThreadLocal<DollarReferenceFrame> THREAD_FRAME = ThreadLocal.withInitial(DollarReferenceFrame::new);
+	private static final Object UNSET_TEMPORARY = new Object();
+	/**
+	 * The bound slots by reference name. This only grows with the distinct reference names in the loaded data packs.
+	 */
+	private static final Map<String, Integer> SLOTS = new ConcurrentHashMap<>();
+	private static String[] slotNames = new String[0];
+	private static volatile String[] ingredientNames = new String[0];
+	private static volatile int[] ingredientSlots = new int[0];
+
+	private Object[] values;
+	private boolean[] setSlotFlags;
+	private int[] setSlots;
+	private int setSlotCount;
+	private Object[] temporaries;
+	private int temporaryBase;
+	private int temporaryTop;
+	private boolean inUse;
+
+	public DollarReferenceFrame() {
+		values = new Object[16];
+		setSlotFlags = new boolean[16];
+		setSlots = new int[16];
+		setSlotCount = 0;
+		temporaries = new Object[0];
+	}
+
+	/**
+	 * Gets a cleared frame for the current thread.
+	 * Must be handed back through {@link #release()} when done.
+	 *
+	 * @return a cleared frame
+	 */
+	public static DollarReferenceFrame acquire() {
+		DollarReferenceFrame frame = THREAD_FRAME.get();
+		if (frame.inUse) {
+			frame = new DollarReferenceFrame();
+		}
+		frame.inUse = true;
+		return frame;
+	}
+
+	/**
+	 * Clears this frame so that it doesn't keep any tags alive and marks it as free for reuse.
+	 */
+	public void release() {
+		clear();
+		inUse = false;
+	}
+
+	/**
+	 * Gets the slot of a reference name, binding it to a new slot if it hasn't been bound yet.
+	 * This is meant to be called when expressions are compiled, not for every evaluation.
+	 *
+	 * @param name the reference name
+	 * @return the slot of the name in all frames
+	 */
+	public static int bindSlot(String name) {
+		Integer slot = SLOTS.get(name);
+		if (slot == null) {
+			synchronized (SLOTS) {
+				slot = SLOTS.get(name);
+				if (slot == null) {
+					slot = slotNames.length;
+					slotNames = Arrays.copyOf(slotNames, slot + 1);
+					slotNames[slot] = name;
+					SLOTS.put(name, slot);
+				}
+			}
+		}
+		return slot;
+	}
+
+	/**
+	 * Gets the slot of a reference name without binding it.
+	 *
+	 * @param name the reference name
+	 * @return the slot or <code>-1</code> if no expression or frame has used the name yet
+	 */
+	public static int findSlot(String name) {
+		Integer slot = SLOTS.get(name);
+		return slot == null ? -1 : slot;
+	}
+
+	private static String getSlotName(int slot) {
+		synchronized (SLOTS) {
+			return slotNames[slot];
+		}
+	}
+
+	/**
+	 * Gets the reference name of the ingredient with the given index, as in <code>i0</code>, <code>i1</code>, etc.
+	 *
+	 * @param index the index of the ingredient
+	 * @return the interned reference name
+	 */
+	public static String getIngredientName(int index) {
+		String[] names = ingredientNames;
+		if (index >= names.length) {
+			ensureIngredients(index);
+			names = ingredientNames;
+		}
+		return names[index];
+	}
+
+	/**
+	 * Gets the slot of the ingredient with the given index.
+	 *
+	 * @param index the index of the ingredient
+	 * @return the slot of <code>iN</code>
+	 */
+	public static int getIngredientSlot(int index) {
+		int[] slots = ingredientSlots;
+		if (index >= slots.length) {
+			ensureIngredients(index);
+			slots = ingredientSlots;
+		}
+		return slots[index];
+	}
+
+	private static void ensureIngredients(int index) {
+		synchronized (DollarReferenceFrame.class) {
+			String[] names = ingredientNames;
+			if (index >= names.length) {
+				String[] newNames = Arrays.copyOf(names, Math.max(index + 1, names.length * 2));
+				int[] newSlots = Arrays.copyOf(ingredientSlots, newNames.length);
+				for (int i = names.length; i < newNames.length; i++) {
+					newNames[i] = ("i" + i).intern();
+					newSlots[i] = bindSlot(newNames[i]);
+				}
+				// the slots are published first, since readers check the length of the names
+				ingredientSlots = newSlots;
+				ingredientNames = newNames;
+			}
+		}
+	}
+
+	public Object get(int slot) {
+		return slot < values.length ? values[slot] : null;
+	}
+
+	public void set(int slot, Object value) {
+		if (slot >= values.length) {
+			if (value == null)
+				return;
+			ensureCapacity(slot + 1);
+		}
+		if (!setSlotFlags[slot] && value != null) {
+			setSlotFlags[slot] = true;
+			if (setSlotCount == setSlots.length) {
+				setSlots = Arrays.copyOf(setSlots, setSlotCount * 2);
+			}
+			setSlots[setSlotCount++] = slot;
+		}
+		values[slot] = value;
+	}
+
+	/**
+	 * Opens a new scope of unnamed temporary values, as used for common subexpressions.
+	 * The temporaries are not visible through the {@link Map} interface.
+	 *
+	 * @param count the number of temporaries in the new scope
+	 * @return a handle that must be passed to {@link #popTemporaries(int)}
+	 */
+	public int pushTemporaries(int count) {
+		int previousBase = temporaryBase;
+		if (temporaryTop + count > temporaries.length) {
+			temporaries = Arrays.copyOf(temporaries, Math.max(temporaryTop + count, temporaries.length * 2));
+		}
+		temporaryBase = temporaryTop;
+		temporaryTop += count;
+		Arrays.fill(temporaries, temporaryBase, temporaryTop, UNSET_TEMPORARY);
+		return previousBase;
+	}
+
+	public void popTemporaries(int handle) {
+		Arrays.fill(temporaries, temporaryBase, temporaryTop, null);
+		temporaryTop = temporaryBase;
+		temporaryBase = handle;
+	}
+
+	public boolean isTemporarySet(int index) {
+		return temporaries[temporaryBase + index] != UNSET_TEMPORARY;
+	}
+
+	public Object getTemporary(int index) {
+		return temporaries[temporaryBase + index];
+	}
+
+	public void setTemporary(int index, Object value) {
+		temporaries[temporaryBase + index] = value;
+	}
+
+	@Override
+	public Object get(Object key) {
+		if (key instanceof String) {
+			int slot = findSlot((String) key);
+			if (slot >= 0) {
+				return get(slot);
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return get(key) != null;
+	}
+
+	@Override
+	public Object put(String key, Object value) {
+		int slot = bindSlot(key);
+		Object old = get(slot);
+		set(slot, value);
+		return old;
+	}
+
+	@Override
+	public Object remove(Object key) {
+		if (key instanceof String) {
+			int slot = findSlot((String) key);
+			if (slot >= 0 && slot < values.length) {
+				Object old = values[slot];
+				values[slot] = null;
+				return old;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public void clear() {
+		for (int i = 0; i < setSlotCount; i++) {
+			int slot = setSlots[i];
+			values[slot] = null;
+			setSlotFlags[slot] = false;
+		}
+		setSlotCount = 0;
+		Arrays.fill(temporaries, 0, temporaryTop, null);
+		temporaryBase = 0;
+		temporaryTop = 0;
+	}
+
+	@Override
+	public int size() {
+		int size = 0;
+		for (int i = 0; i < setSlotCount; i++) {
+			if (values[setSlots[i]] != null) {
+				size++;
+			}
+		}
+		return size;
+	}
+
+	@Override
+	public Set<Entry<String, Object>> entrySet() {
+		Set<Entry<String, Object>> entries = new LinkedHashSet<>();
+		for (int i = 0; i < setSlotCount; i++) {
+			int slot = setSlots[i];
+			if (values[slot] != null) {
+				entries.add(new SimpleImmutableEntry<>(getSlotName(slot), values[slot]));
+			}
+		}
+		return entries;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > values.length) {
+			int newLength = Math.max(capacity, values.length * 2);
+			values = Arrays.copyOf(values, newLength);
+			setSlotFlags = Arrays.copyOf(setSlotFlags, newLength);
+		}
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2020-2022 Siphalor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package de.siphalor.nbtcrafting.dollar;
+
+import java.util.Set;
+
+import net.minecraft.item.ItemStack;
+
+/**
+ * A precompiled result stack: the dollars are extracted once and the remaining stack is kept as a template
+ * that only needs to be copied for every craft.
+ */
+public class DollarTemplate {
+	private final ItemStack template;
+	private final Dollar[] dollars;
+	private final Set<String> references;
+
+	public DollarTemplate(ItemStack baseOutput) {
+		template = baseOutput.copy();
+		dollars = DollarParser.extractDollars(template.getTag(), true);
+		references = DollarUtil.collectReferences(dollars);
+	}
+
+	public boolean hasDollars() {
+		return dollars.length > 0;
+	}
+
+	public Dollar[] getDollars() {
+		return dollars;
+	}
+
+	/**
+	 * Gets the names of all references that the dollars of this template may read.
+	 * Only these have to be provided on application.
+	 *
+	 * @return an unmodifiable set of reference names
+	 */
+	public Set<String> getReferences() {
+		return references;
+	}
+
+	/**
+	 * Creates a new stack from the template.
+	 *
+	 * @return a copy of the dollar-stripped template
+	 */
+	public ItemStack createStack() {
+		return template.copy();
+	}
+}
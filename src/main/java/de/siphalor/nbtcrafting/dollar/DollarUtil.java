@@ -17,6 +17,10 @@
 
 package de.siphalor.nbtcrafting.dollar;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
 public class DollarUtil {
 	public static boolean asBoolean(Object o) {
 		if (o instanceof Number) {
@@ -27,4 +31,15 @@ public class DollarUtil {
 		}
 		return false;
 	}
+
+	public static Set<String> collectReferences(Dollar[] dollars) {
+		if (dollars.length == 0) {
+			return Collections.emptySet();
+		}
+		Set<String> references = new HashSet<>();
+		for (Dollar dollar : dollars) {
+			references.addAll(dollar.getReferences());
+		}
+		return Collections.unmodifiableSet(references);
+	}
 }
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2020-2022 Siphalor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package de.siphalor.nbtcrafting.dollar.part;
+
+import java.util.Map;
+import java.util.Set;
+
+import de.siphalor.nbtcrafting.dollar.DollarEvaluationException;
+import de.siphalor.nbtcrafting.dollar.DollarReferenceFrame;
+
+/**
+ * A dollar expression together with its compiled evaluator, see {@link de.siphalor.nbtcrafting.dollar.DollarCompiler}.
+ * <p>
+ * Evaluations on {@link DollarReferenceFrame}s run the compiled evaluator.
+ * Plain reference maps are still evaluated by interpreting the source expression.
+ */
+public class CompiledDollarPart implements DollarPart {
+	private final DollarPart source;
+	private final Evaluator evaluator;
+
+	public CompiledDollarPart(DollarPart source, Evaluator evaluator) {
+		this.source = source;
+		this.evaluator = evaluator;
+	}
+
+	@Override
+	public Object evaluate(Map<String, Object> reference) throws DollarEvaluationException {
+		if (reference instanceof DollarReferenceFrame) {
+			return evaluator.evaluate((DollarReferenceFrame) reference);
+		}
+		return source.evaluate(reference);
+	}
+
+	public DollarPart getSource() {
+		return source;
+	}
+
+	@Override
+	public void collectReferences(Set<String> references) {
+		source.collectReferences(references);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		return source.equals(((CompiledDollarPart) o).source);
+	}
+
+	@Override
+	public int hashCode() {
+		return source.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return source.toString();
+	}
+
+	@FunctionalInterface
+	public interface Evaluator {
+		Object evaluate(DollarReferenceFrame frame) throws DollarEvaluationException;
+	}
+}
@@ -18,18 +18,52 @@
 package de.siphalor.nbtcrafting.dollar.part;
 
 import java.util.Map;
+import java.util.Set;
 
 import de.siphalor.nbtcrafting.dollar.DollarDeserializationException;
 import de.siphalor.nbtcrafting.dollar.DollarEvaluationException;
 import de.siphalor.nbtcrafting.dollar.DollarParser;
 
+/**
+ * A node of a parsed dollar expression.
+ * Parts are immutable once parsed, since identical expressions get shared through the expression pool of {@link DollarParser}.
+ */
 public interface DollarPart {
+	DollarPart[] NO_CHILDREN = new DollarPart[0];
+
 	Object evaluate(Map<String, Object> reference) throws DollarEvaluationException;
 
 	default boolean isConstant() {
 		return false;
 	}
 
+	/**
+	 * Adds the names of all references that this part may read on evaluation to the given set.
+	 *
+	 * @param references the set to add the reference names to
+	 */
+	default void collectReferences(Set<String> references) {
+	}
+
+	/**
+	 * Gets the direct sub-parts of this part.
+	 *
+	 * @return the children in a fixed order; must not be modified
+	 */
+	default DollarPart[] getChildren() {
+		return NO_CHILDREN;
+	}
+
+	/**
+	 * Creates a part of the same kind with the given children.
+	 *
+	 * @param children the new children in the order of {@link #getChildren()}
+	 * @return the new part
+	 */
+	default DollarPart withChildren(DollarPart[] children) {
+		return this;
+	}
+
 	interface Deserializer {
 		boolean matches(int character, DollarParser dollarParser);
 
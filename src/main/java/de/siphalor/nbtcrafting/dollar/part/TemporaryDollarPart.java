@@ -0,0 +1,80 @@
+/*
+ * Copyright 2020-2022 Siphalor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package de.siphalor.nbtcrafting.dollar.part;
+
+import java.util.Map;
+import java.util.Set;
+
+import de.siphalor.nbtcrafting.dollar.DollarEvaluationException;
+import de.siphalor.nbtcrafting.dollar.DollarReferenceFrame;
+
+/**
+ * A subexpression that occurs multiple times in an expression.
+ * It is evaluated at most once per evaluation of the surrounding {@link TemporaryScopeDollarPart}.
+ */
+public class TemporaryDollarPart implements DollarPart {
+	private final int index;
+	private final DollarPart dollarPart;
+
+	public TemporaryDollarPart(int index, DollarPart dollarPart) {
+		this.index = index;
+		this.dollarPart = dollarPart;
+	}
+
+	@Override
+	public Object evaluate(Map<String, Object> reference) throws DollarEvaluationException {
+		if (!(reference instanceof DollarReferenceFrame)) {
+			return dollarPart.evaluate(reference);
+		}
+		DollarReferenceFrame frame = (DollarReferenceFrame) reference;
+		if (frame.isTemporarySet(index)) {
+			return frame.getTemporary(index);
+		}
+		Object value = dollarPart.evaluate(reference);
+		frame.setTemporary(index, value);
+		return value;
+	}
+
+	@Override
+	public void collectReferences(Set<String> references) {
+		dollarPart.collectReferences(references);
+	}
+
+	@Override
+	public DollarPart[] getChildren() {
+		return new DollarPart[] {dollarPart};
+	}
+
+	@Override
+	public DollarPart withChildren(DollarPart[] children) {
+		return new TemporaryDollarPart(index, children[0]);
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	public DollarPart getDollarPart() {
+		return dollarPart;
+	}
+
+	@Override
+	public String toString() {
+		return "$t" + index;
+	}
+}
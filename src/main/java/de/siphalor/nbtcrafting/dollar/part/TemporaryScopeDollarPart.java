@@ -0,0 +1,79 @@
+/*
+ * Copyright 2020-2022 Siphalor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package de.siphalor.nbtcrafting.dollar.part;
+
+import java.util.Map;
+import java.util.Set;
+
+import de.siphalor.nbtcrafting.dollar.DollarEvaluationException;
+import de.siphalor.nbtcrafting.dollar.DollarReferenceFrame;
+
+/**
+ * The root of an expression that contains {@link TemporaryDollarPart}s.
+ * Provides fresh storage for the temporaries on every evaluation.
+ */
+public class TemporaryScopeDollarPart implements DollarPart {
+	private final DollarPart body;
+	private final TemporaryDollarPart[] temporaries;
+
+	public TemporaryScopeDollarPart(DollarPart body, TemporaryDollarPart[] temporaries) {
+		this.body = body;
+		this.temporaries = temporaries;
+	}
+
+	@Override
+	public Object evaluate(Map<String, Object> reference) throws DollarEvaluationException {
+		DollarReferenceFrame frame;
+		if (reference instanceof DollarReferenceFrame) {
+			frame = (DollarReferenceFrame) reference;
+		} else {
+			frame = new DollarReferenceFrame();
+			if (reference != null) {
+				frame.putAll(reference);
+			}
+		}
+		int handle = frame.pushTemporaries(temporaries.length);
+		try {
+			return body.evaluate(frame);
+		} finally {
+			frame.popTemporaries(handle);
+		}
+	}
+
+	@Override
+	public void collectReferences(Set<String> references) {
+		body.collectReferences(references);
+	}
+
+	public DollarPart getBody() {
+		return body;
+	}
+
+	public TemporaryDollarPart[] getTemporaries() {
+		return temporaries;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder stringBuilder = new StringBuilder();
+		for (TemporaryDollarPart temporary : temporaries) {
+			stringBuilder.append(temporary).append(" = ").append(temporary.getDollarPart()).append("; ");
+		}
+		return stringBuilder.append(body).toString();
+	}
+}
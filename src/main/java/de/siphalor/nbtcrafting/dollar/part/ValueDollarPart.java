@@ -17,6 +17,8 @@
 
 package de.siphalor.nbtcrafting.dollar.part;
 
+import java.util.Objects;
+
 public class ValueDollarPart extends ConstantDollarPart {
 	private final Object value;
 
@@ -37,4 +39,24 @@ public class ValueDollarPart extends ConstantDollarPart {
 	public Object getValue() {
 		return value;
 	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		return Objects.equals(value, ((ValueDollarPart) o).value);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hashCode(value);
+	}
+
+	@Override
+	public String toString() {
+		if (value instanceof String) {
+			return "\"" + value + "\"";
+		}
+		return String.valueOf(value);
+	}
 }
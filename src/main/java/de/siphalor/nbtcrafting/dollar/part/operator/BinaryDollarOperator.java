@@ -18,6 +18,7 @@
 package de.siphalor.nbtcrafting.dollar.part.operator;
 
 import java.util.Map;
+import java.util.Set;
 
 import de.siphalor.nbtcrafting.dollar.DollarEvaluationException;
 import de.siphalor.nbtcrafting.dollar.part.DollarPart;
@@ -36,5 +37,51 @@ public abstract class BinaryDollarOperator implements DollarPart {
 		return apply(first.evaluate(reference), second.evaluate(reference));
 	}
 
+	@Override
+	public void collectReferences(Set<String> references) {
+		first.collectReferences(references);
+		second.collectReferences(references);
+	}
+
+	@Override
+	public DollarPart[] getChildren() {
+		return new DollarPart[] {first, second};
+	}
+
+	@Override
+	public DollarPart withChildren(DollarPart[] children) {
+		return create(children[0], children[1]);
+	}
+
+	public DollarPart getFirst() {
+		return first;
+	}
+
+	public DollarPart getSecond() {
+		return second;
+	}
+
+	protected abstract BinaryDollarOperator create(DollarPart first, DollarPart second);
+
+	protected abstract String getSymbol();
+
 	public abstract Object apply(Object first, Object second) throws DollarEvaluationException;
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		BinaryDollarOperator that = (BinaryDollarOperator) o;
+		return first.equals(that.first) && second.equals(that.second);
+	}
+
+	@Override
+	public int hashCode() {
+		return (getClass().hashCode() * 31 + first.hashCode()) * 31 + second.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return "(" + first + " " + getSymbol() + " " + second + ")";
+	}
 }
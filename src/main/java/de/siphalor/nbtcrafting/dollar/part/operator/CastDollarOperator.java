@@ -18,6 +18,7 @@
 package de.siphalor.nbtcrafting.dollar.part.operator;
 
 import java.util.Map;
+import java.util.Set;
 
 import de.siphalor.nbtcrafting.dollar.DollarEvaluationException;
 import de.siphalor.nbtcrafting.dollar.DollarException;
@@ -45,7 +46,17 @@ public class CastDollarOperator implements DollarPart {
 
 	@Override
 	public Object evaluate(Map<String, Object> reference) throws DollarEvaluationException {
-		Object value = dollarPart.evaluate(reference);
+		return cast(dollarPart.evaluate(reference), typeId);
+	}
+
+	/**
+	 * Casts a value to the type of the given type character.
+	 *
+	 * @param value  the value to cast
+	 * @param typeId the type character as used after <code>#</code>
+	 * @return the cast value or <code>null</code> for unknown types
+	 */
+	public static Object cast(Object value, int typeId) {
 		switch (typeId) {
 			case 'd':
 				if (value instanceof Number)
@@ -85,6 +96,47 @@ public class CastDollarOperator implements DollarPart {
 		}
 	}
 
+	public DollarPart getDollarPart() {
+		return dollarPart;
+	}
+
+	public int getTypeId() {
+		return typeId;
+	}
+
+	@Override
+	public void collectReferences(Set<String> references) {
+		dollarPart.collectReferences(references);
+	}
+
+	@Override
+	public DollarPart[] getChildren() {
+		return new DollarPart[] {dollarPart};
+	}
+
+	@Override
+	public DollarPart withChildren(DollarPart[] children) {
+		return new CastDollarOperator(children[0], typeId);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		CastDollarOperator that = (CastDollarOperator) o;
+		return typeId == that.typeId && dollarPart.equals(that.dollarPart);
+	}
+
+	@Override
+	public int hashCode() {
+		return dollarPart.hashCode() * 31 + typeId;
+	}
+
+	@Override
+	public String toString() {
+		return dollarPart + "#" + String.valueOf(Character.toChars(typeId));
+	}
+
 	public static class Deserializer implements DollarPart.Deserializer {
 		@Override
 		public boolean matches(int character, DollarParser dollarParser) {
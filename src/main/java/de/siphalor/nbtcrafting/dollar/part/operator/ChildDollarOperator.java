@@ -30,6 +30,22 @@ public class ChildDollarOperator extends BinaryDollarOperator {
 		super(first, second);
 	}
 
+	@Override
+	protected BinaryDollarOperator create(DollarPart first, DollarPart second) {
+		return new ChildDollarOperator(first, second);
+	}
+
+	@Override
+	protected String getSymbol() {
+		return ".";
+	}
+
+	@Override
+	public String toString() {
+		DollarPart[] children = getChildren();
+		return children[0] + "[" + children[1] + "]";
+	}
+
 	@Override
 	public Object apply(Object first, Object second) {
 		if (first instanceof CompoundTag) {
@@ -54,20 +70,12 @@ public class ChildDollarOperator extends BinaryDollarOperator {
 
 		public DollarPart parse(DollarParser dollarParser, DollarPart lastDollarPart, int priority) {
 			dollarParser.skip();
-			StringBuilder stringBuilder = new StringBuilder();
-			int character = dollarParser.eat();
-			if (Character.isJavaIdentifierStart(character)) {
-				stringBuilder.append(Character.toChars(character));
-				while (true) {
-					character = dollarParser.peek();
-					if (Character.isJavaIdentifierPart(character)) {
-						dollarParser.skip();
-						stringBuilder.append(Character.toChars(character));
-					} else {
-						break;
-					}
+			int start = dollarParser.getPosition();
+			if (Character.isJavaIdentifierStart(dollarParser.eat())) {
+				while (Character.isJavaIdentifierPart(dollarParser.peek())) {
+					dollarParser.skip();
 				}
-				return new ChildDollarOperator(lastDollarPart, ValueDollarPart.of(stringBuilder.toString()));
+				return new ChildDollarOperator(lastDollarPart, ValueDollarPart.of(dollarParser.slice(start, dollarParser.getPosition())));
 			}
 			return null;
 		}
@@ -18,6 +18,7 @@
 package de.siphalor.nbtcrafting.dollar.part.operator;
 
 import java.util.Map;
+import java.util.Set;
 
 import de.siphalor.nbtcrafting.dollar.DollarDeserializationException;
 import de.siphalor.nbtcrafting.dollar.DollarEvaluationException;
@@ -36,6 +37,21 @@ public class ConditionDollarOperator implements DollarPart {
 		this.elsePart = elsePart;
 	}
 
+	public static DollarPart of(DollarPart condition, DollarPart thenPart, DollarPart elsePart) throws DollarDeserializationException {
+		if (condition.isConstant()) {
+			try {
+				if (DollarUtil.asBoolean(condition.evaluate(null))) {
+					return thenPart;
+				} else {
+					return elsePart;
+				}
+			} catch (DollarEvaluationException e) {
+				throw new DollarDeserializationException(e);
+			}
+		}
+		return new ConditionDollarOperator(condition, thenPart, elsePart);
+	}
+
 	@Override
 	public Object evaluate(Map<String, Object> reference) throws DollarEvaluationException {
 		if (DollarUtil.asBoolean(condition.evaluate(reference))) {
@@ -44,6 +60,53 @@ public class ConditionDollarOperator implements DollarPart {
 		return elsePart.evaluate(reference);
 	}
 
+	@Override
+	public void collectReferences(Set<String> references) {
+		condition.collectReferences(references);
+		thenPart.collectReferences(references);
+		elsePart.collectReferences(references);
+	}
+
+	@Override
+	public DollarPart[] getChildren() {
+		return new DollarPart[] {condition, thenPart, elsePart};
+	}
+
+	@Override
+	public DollarPart withChildren(DollarPart[] children) {
+		return new ConditionDollarOperator(children[0], children[1], children[2]);
+	}
+
+	public DollarPart getCondition() {
+		return condition;
+	}
+
+	public DollarPart getThenPart() {
+		return thenPart;
+	}
+
+	public DollarPart getElsePart() {
+		return elsePart;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		ConditionDollarOperator that = (ConditionDollarOperator) o;
+		return condition.equals(that.condition) && thenPart.equals(that.thenPart) && elsePart.equals(that.elsePart);
+	}
+
+	@Override
+	public int hashCode() {
+		return (condition.hashCode() * 31 + thenPart.hashCode()) * 31 + elsePart.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return "(" + condition + " ? " + thenPart + " : " + elsePart + ")";
+	}
+
 	public static class Deserializer implements DollarPart.Deserializer {
 		@Override
 		public boolean matches(int character, DollarParser dollarParser) {
@@ -56,19 +119,7 @@ public class ConditionDollarOperator implements DollarPart {
 			DollarPart thenPart = dollarParser.parseTo(':');
 			DollarPart elsePart = dollarParser.parse(priority);
 
-			if (lastDollarPart.isConstant()) {
-				try {
-					if (DollarUtil.asBoolean(lastDollarPart.evaluate(null))) {
-						return thenPart;
-					} else {
-						return elsePart;
-					}
-				} catch (DollarEvaluationException e) {
-					throw new DollarDeserializationException(e);
-				}
-			}
-
-			return new ConditionDollarOperator(lastDollarPart, thenPart, elsePart);
+			return ConditionDollarOperator.of(lastDollarPart, thenPart, elsePart);
 		}
 	}
 }
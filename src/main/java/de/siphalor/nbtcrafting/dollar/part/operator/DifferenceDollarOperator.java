@@ -41,6 +41,16 @@ public class DifferenceDollarOperator extends BinaryDollarOperator {
 		return instance;
 	}
 
+	@Override
+	protected BinaryDollarOperator create(DollarPart first, DollarPart second) {
+		return new DifferenceDollarOperator(first, second);
+	}
+
+	@Override
+	protected String getSymbol() {
+		return "-";
+	}
+
 	@Override
 	public Object apply(Object first, Object second) {
 		if ((first instanceof Number || first == null) && (second instanceof Number || second == null))
@@ -20,7 +20,7 @@ package de.siphalor.nbtcrafting.dollar.part.operator;
 import org.apache.commons.lang3.StringUtils;
 
 import de.siphalor.nbtcrafting.dollar.DollarDeserializationException;
-import de.siphalor.nbtcrafting.dollar.DollarException;
+import de.siphalor.nbtcrafting.dollar.DollarEvaluationException;
 import de.siphalor.nbtcrafting.dollar.DollarParser;
 import de.siphalor.nbtcrafting.dollar.part.DollarPart;
 import de.siphalor.nbtcrafting.dollar.part.ValueDollarPart;
@@ -31,12 +31,26 @@ public class ProductDollarOperator extends BinaryDollarOperator {
 		super(first, second);
 	}
 
-	public static DollarPart of(DollarPart first, DollarPart second) throws DollarException {
+	public static DollarPart of(DollarPart first, DollarPart second) throws DollarDeserializationException {
 		DollarPart instance = new ProductDollarOperator(first, second);
 		if (first.isConstant() && second.isConstant()) {
-			return ValueDollarPart.of(instance.evaluate(null));
+			try {
+				return ValueDollarPart.of(instance.evaluate(null));
+			} catch (DollarEvaluationException e) {
+				throw new DollarDeserializationException(e);
+			}
 		}
-		return null;
+		return instance;
+	}
+
+	@Override
+	protected BinaryDollarOperator create(DollarPart first, DollarPart second) {
+		return new ProductDollarOperator(first, second);
+	}
+
+	@Override
+	protected String getSymbol() {
+		return "*";
 	}
 
 	@Override
@@ -64,7 +78,7 @@ public class ProductDollarOperator extends BinaryDollarOperator {
 				throw new DollarDeserializationException("Unexpected asterisk!");
 			}
 			dollarParser.skip();
-			return new ProductDollarOperator(lastDollarPart, dollarParser.parse(priority));
+			return ProductDollarOperator.of(lastDollarPart, dollarParser.parse(priority));
 		}
 	}
 }
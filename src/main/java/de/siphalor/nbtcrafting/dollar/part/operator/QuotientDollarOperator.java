@@ -20,7 +20,7 @@ package de.siphalor.nbtcrafting.dollar.part.operator;
 import org.apache.commons.lang3.StringUtils;
 
 import de.siphalor.nbtcrafting.dollar.DollarDeserializationException;
-import de.siphalor.nbtcrafting.dollar.DollarException;
+import de.siphalor.nbtcrafting.dollar.DollarEvaluationException;
 import de.siphalor.nbtcrafting.dollar.DollarParser;
 import de.siphalor.nbtcrafting.dollar.part.DollarPart;
 import de.siphalor.nbtcrafting.dollar.part.ValueDollarPart;
@@ -31,14 +31,28 @@ public class QuotientDollarOperator extends BinaryDollarOperator {
 		super(first, second);
 	}
 
-	public static DollarPart of(DollarPart first, DollarPart second) throws DollarException {
+	public static DollarPart of(DollarPart first, DollarPart second) throws DollarDeserializationException {
 		DollarPart instance = new QuotientDollarOperator(first, second);
 		if (first.isConstant() && second.isConstant()) {
-			return ValueDollarPart.of(instance.evaluate(null));
+			try {
+				return ValueDollarPart.of(instance.evaluate(null));
+			} catch (DollarEvaluationException e) {
+				throw new DollarDeserializationException(e);
+			}
 		}
 		return instance;
 	}
 
+	@Override
+	protected BinaryDollarOperator create(DollarPart first, DollarPart second) {
+		return new QuotientDollarOperator(first, second);
+	}
+
+	@Override
+	protected String getSymbol() {
+		return "/";
+	}
+
 	@Override
 	public Object apply(Object first, Object second) {
 		if (first instanceof Number && second instanceof Number) {
@@ -57,7 +71,7 @@ public class QuotientDollarOperator extends BinaryDollarOperator {
 		@Override
 		public DollarPart parse(DollarParser dollarParser, DollarPart lastDollarPart, int priority) throws DollarDeserializationException {
 			dollarParser.skip();
-			return new QuotientDollarOperator(lastDollarPart, dollarParser.parse(priority));
+			return QuotientDollarOperator.of(lastDollarPart, dollarParser.parse(priority));
 		}
 	}
 }
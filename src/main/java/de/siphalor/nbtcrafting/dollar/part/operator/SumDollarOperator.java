@@ -46,6 +46,16 @@ public class SumDollarOperator extends BinaryDollarOperator {
 		return instance;
 	}
 
+	@Override
+	protected BinaryDollarOperator create(DollarPart first, DollarPart second) {
+		return new SumDollarOperator(first, second);
+	}
+
+	@Override
+	protected String getSymbol() {
+		return "+";
+	}
+
 	@Override
 	public Object apply(Object first, Object second) throws DollarEvaluationException {
 		if ((first instanceof Number || first == null) && (second instanceof Number || second == null))
@@ -40,6 +40,16 @@ public class InverseDollarOperator extends UnaryDollarOperator {
 		return instance;
 	}
 
+	@Override
+	protected UnaryDollarOperator create(DollarPart dollarPart) {
+		return new InverseDollarOperator(dollarPart);
+	}
+
+	@Override
+	public String toString() {
+		return "-" + dollarPart;
+	}
+
 	@Override
 	public Object evaluate(Object value) {
 		if (value instanceof Number) {
@@ -30,28 +30,41 @@ public class NumberDollarPartDeserializer implements DollarPart.UnaryDeserialize
 
 	@Override
 	public DollarPart parse(DollarParser dollarParser) throws DollarDeserializationException {
-		StringBuilder stringBuilder = new StringBuilder(String.valueOf(Character.toChars(dollarParser.eat())));
+		int start = dollarParser.getPosition();
+		int character = dollarParser.eat();
+		// integers are accumulated directly, only decimals and special digits need the string slice
+		long value = Character.digit(character, 10);
+		boolean simple = character >= '0' && character <= '9';
 		boolean dot = false;
-		int character;
 		while (true) {
 			character = dollarParser.peek();
 			if (Character.isDigit(character)) {
 				dollarParser.skip();
-				stringBuilder.append(Character.toChars(character));
+				if (character >= '0' && character <= '9') {
+					value = value * 10 + (character - '0');
+					if (value > Integer.MAX_VALUE) {
+						simple = false;
+					}
+				} else {
+					simple = false;
+				}
 			} else if (!dot && character == '.') {
 				dollarParser.skip();
-				stringBuilder.append('.');
 				dot = true;
 			} else {
 				break;
 			}
 		}
 
+		if (simple && !dot) {
+			return ValueDollarPart.of((int) value);
+		}
 		try {
+			String number = dollarParser.slice(start, dollarParser.getPosition());
 			if (dot)
-				return ValueDollarPart.of(Double.parseDouble(stringBuilder.toString()));
+				return ValueDollarPart.of(Double.parseDouble(number));
 			else
-				return ValueDollarPart.of(Integer.parseInt(stringBuilder.toString()));
+				return ValueDollarPart.of(Integer.parseInt(number));
 		} catch (NumberFormatException e) {
 			throw new DollarDeserializationException(e);
 		}
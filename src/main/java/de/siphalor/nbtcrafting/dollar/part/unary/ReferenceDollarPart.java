@@ -18,16 +18,23 @@
 package de.siphalor.nbtcrafting.dollar.part.unary;
 
 import java.util.Map;
+import java.util.Set;
 
 import de.siphalor.nbtcrafting.dollar.DollarEvaluationException;
 import de.siphalor.nbtcrafting.dollar.DollarParser;
+import de.siphalor.nbtcrafting.dollar.DollarReferenceFrame;
 import de.siphalor.nbtcrafting.dollar.part.DollarPart;
 
 public class ReferenceDollarPart implements DollarPart {
 	private final String key;
+	/**
+	 * The slot that {@link #key} is bound to in all {@link DollarReferenceFrame}s.
+	 */
+	private final int slot;
 
 	private ReferenceDollarPart(String key) {
-		this.key = key;
+		this.key = key.intern();
+		this.slot = DollarReferenceFrame.bindSlot(this.key);
 	}
 
 	public static DollarPart of(String key) {
@@ -36,10 +43,49 @@ public class ReferenceDollarPart implements DollarPart {
 
 	@Override
 	public Object evaluate(Map<String, Object> reference) throws DollarEvaluationException {
-		if (!reference.containsKey(key)) {
+		if (reference instanceof DollarReferenceFrame) {
+			Object value = ((DollarReferenceFrame) reference).get(slot);
+			if (value == null) {
+				throw new DollarEvaluationException("Could not resolve reference to nbt tag '" + key + "'");
+			}
+			return value;
+		}
+
+		Object value = reference.get(key);
+		if (value == null && !reference.containsKey(key)) {
 			throw new DollarEvaluationException("Could not resolve reference to nbt tag '" + key + "'");
 		}
-		return reference.get(key);
+		return value;
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	public int getSlot() {
+		return slot;
+	}
+
+	@Override
+	public void collectReferences(Set<String> references) {
+		references.add(key);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		return key.equals(((ReferenceDollarPart) o).key);
+	}
+
+	@Override
+	public int hashCode() {
+		return key.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return key;
 	}
 
 	public static class Deserializer implements DollarPart.UnaryDeserializer {
@@ -50,17 +96,12 @@ public class ReferenceDollarPart implements DollarPart {
 
 		@Override
 		public DollarPart parse(DollarParser dollarParser) {
-			StringBuilder stringBuilder = new StringBuilder(String.valueOf(Character.toChars(dollarParser.eat())));
-			int character;
-			while (true) {
-				character = dollarParser.peek();
-				if (Character.isJavaIdentifierPart(character)) {
-					dollarParser.skip();
-					stringBuilder.append(Character.toChars(character));
-				} else {
-					return ReferenceDollarPart.of(stringBuilder.toString());
-				}
+			int start = dollarParser.getPosition();
+			dollarParser.skip();
+			while (Character.isJavaIdentifierPart(dollarParser.peek())) {
+				dollarParser.skip();
 			}
+			return ReferenceDollarPart.of(dollarParser.slice(start, dollarParser.getPosition()));
 		}
 	}
 }
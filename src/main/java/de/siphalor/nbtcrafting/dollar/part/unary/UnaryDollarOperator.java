@@ -18,6 +18,7 @@
 package de.siphalor.nbtcrafting.dollar.part.unary;
 
 import java.util.Map;
+import java.util.Set;
 
 import de.siphalor.nbtcrafting.dollar.DollarEvaluationException;
 import de.siphalor.nbtcrafting.dollar.part.DollarPart;
@@ -34,5 +35,38 @@ public abstract class UnaryDollarOperator implements DollarPart {
 		return evaluate(dollarPart.evaluate(reference));
 	}
 
+	@Override
+	public void collectReferences(Set<String> references) {
+		dollarPart.collectReferences(references);
+	}
+
+	@Override
+	public DollarPart[] getChildren() {
+		return new DollarPart[] {dollarPart};
+	}
+
+	@Override
+	public DollarPart withChildren(DollarPart[] children) {
+		return create(children[0]);
+	}
+
+	public DollarPart getDollarPart() {
+		return dollarPart;
+	}
+
+	protected abstract UnaryDollarOperator create(DollarPart dollarPart);
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		return dollarPart.equals(((UnaryDollarOperator) o).dollarPart);
+	}
+
+	@Override
+	public int hashCode() {
+		return getClass().hashCode() * 31 + dollarPart.hashCode();
+	}
+
 	public abstract Object evaluate(Object value) throws DollarEvaluationException;
 }
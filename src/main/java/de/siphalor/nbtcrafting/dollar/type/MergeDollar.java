@@ -27,6 +27,7 @@ import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.Tag;
 
 import de.siphalor.nbtcrafting.api.nbt.MergeMode;
+import de.siphalor.nbtcrafting.api.nbt.MergeModeMatcher;
 import de.siphalor.nbtcrafting.api.nbt.NbtUtil;
 import de.siphalor.nbtcrafting.dollar.Dollar;
 import de.siphalor.nbtcrafting.dollar.DollarEvaluationException;
@@ -35,9 +36,13 @@ import de.siphalor.nbtcrafting.dollar.part.DollarPart;
 
 public class MergeDollar extends Dollar {
 	protected final String path;
-	protected final Collection<Pair<Pattern, MergeMode>> mergeModes;
+	protected final MergeModeMatcher mergeModes;
 
 	public MergeDollar(DollarPart expression, String path, Collection<Pair<Pattern, MergeMode>> mergeModes) {
+		this(expression, path, MergeModeMatcher.ofPatterns(mergeModes));
+	}
+
+	public MergeDollar(DollarPart expression, String path, MergeModeMatcher mergeModes) {
 		super(expression);
 		this.path = path;
 		this.mergeModes = mergeModes;
@@ -49,7 +54,7 @@ public class MergeDollar extends Dollar {
 		if (!(value instanceof CompoundTag)) {
 			throw new DollarEvaluationException("Couldn't set stacks main tag as given dollar expression evaluates to non-object value.");
 		} else {
-			NbtUtil.mergeInto(stack.getOrCreateTag(), (CompoundTag) value, mergeModes, "");
+			NbtUtil.mergeInto(stack.getOrCreateTag(), (CompoundTag) value, mergeModes);
 		}
 	}
 }
@@ -24,15 +24,20 @@ import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.Tag;
 
 import de.siphalor.nbtcrafting.api.nbt.NbtException;
+import de.siphalor.nbtcrafting.api.nbt.NbtPath;
 import de.siphalor.nbtcrafting.api.nbt.NbtUtil;
 import de.siphalor.nbtcrafting.dollar.Dollar;
 import de.siphalor.nbtcrafting.dollar.DollarException;
 import de.siphalor.nbtcrafting.dollar.part.DollarPart;
 
 public class SimpleDollar extends Dollar {
-	protected final String path;
+	protected final NbtPath path;
 
 	public SimpleDollar(DollarPart expression, String path) {
+		this(expression, NbtPath.parse(path));
+	}
+
+	public SimpleDollar(DollarPart expression, NbtPath path) {
 		super(expression);
 		this.path = path;
 	}
@@ -40,10 +45,9 @@ public class SimpleDollar extends Dollar {
 	@Override
 	public void apply(ItemStack stack, Map<String, Object> references) throws DollarException {
 		CompoundTag compoundTag = stack.getOrCreateTag();
-		String[] pathParts = NbtUtil.splitPath(path);
 		try {
 			Tag value = evaluate(references);
-			NbtUtil.put(compoundTag, pathParts, value);
+			NbtUtil.put(compoundTag, path, value);
 		} catch (NbtException e) {
 			e.printStackTrace();
 		}
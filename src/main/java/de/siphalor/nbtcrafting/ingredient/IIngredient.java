@@ -18,8 +18,10 @@
 package de.siphalor.nbtcrafting.ingredient;
 
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Stream;
 
+import it.unimi.dsi.fastutil.ints.IntCollection;
 import net.minecraft.item.ItemStack;
 
 public interface IIngredient {
@@ -28,4 +30,18 @@ public interface IIngredient {
 	boolean nbtCrafting$isAdvanced();
 
 	ItemStack nbtCrafting$getRecipeRemainder(ItemStack stack, Map<String, Object> reference);
+
+	/**
+	 * Gets the names of all references that the remainders of this ingredient may read.
+	 *
+	 * @return an unmodifiable set of reference names
+	 */
+	Set<String> nbtCrafting$getRemainderReferences();
+
+	/**
+	 * Gets the raw ids of all items that this ingredient may match.
+	 *
+	 * @return the raw item ids or <code>null</code> if the ingredient can't be narrowed down to specific items
+	 */
+	IntCollection nbtCrafting$getMatchingItemIds();
 }
@@ -18,27 +18,55 @@
 package de.siphalor.nbtcrafting.ingredient;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 
 import com.google.gson.JsonElement;
+import it.unimi.dsi.fastutil.ints.IntCollection;
 import net.minecraft.item.ItemStack;
 import net.minecraft.util.PacketByteBuf;
 
 import de.siphalor.nbtcrafting.api.RecipeUtil;
 import de.siphalor.nbtcrafting.dollar.Dollar;
 import de.siphalor.nbtcrafting.dollar.DollarParser;
+import de.siphalor.nbtcrafting.dollar.DollarUtil;
 
 public abstract class IngredientEntry {
 	protected ItemStack remainder;
 	protected Dollar[] remainderDollars;
+	protected Set<String> remainderReferences;
 
 	public IngredientEntry() {
 		this.remainder = null;
 		this.remainderDollars = new Dollar[0];
+		this.remainderReferences = Collections.emptySet();
 	}
 
 	public abstract boolean matches(ItemStack stack);
 
+	/**
+	 * Tests the given stack against the nbt condition of this entry.
+	 * The item only needs to be checked if {@link #getItemIds()} returns <code>null</code>.
+	 * By default, this falls back to the full {@link #matches(ItemStack)} test.
+	 *
+	 * @param stack the stack to test
+	 * @return whether the condition matches
+	 */
+	public boolean matchesCondition(ItemStack stack) {
+		return matches(stack);
+	}
+
+	/**
+	 * Gets the raw ids of all items that this entry may match.
+	 * By default, entries are not indexed and get tested against every item.
+	 *
+	 * @return an unmodifiable collection of raw item ids or <code>null</code> if this entry may match any item
+	 */
+	public IntCollection getItemIds() {
+		return null;
+	}
+
 	public abstract JsonElement toJson();
 
 	public Collection<ItemStack> getPreviewStacks() {
@@ -59,5 +87,15 @@ public abstract class IngredientEntry {
 		this.remainder = stack;
 		if (stack.hasTag())
 			this.remainderDollars = DollarParser.extractDollars(stack.getTag(), true);
+		this.remainderReferences = DollarUtil.collectReferences(remainderDollars);
+	}
+
+	/**
+	 * Gets the names of all references that the remainder dollars may read.
+	 *
+	 * @return an unmodifiable set of reference names
+	 */
+	public Set<String> getRemainderReferences() {
+		return remainderReferences;
 	}
 }
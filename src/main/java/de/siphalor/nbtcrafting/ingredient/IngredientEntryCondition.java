@@ -25,9 +25,9 @@ import com.google.gson.JsonParseException;
 import com.google.gson.JsonSyntaxException;
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.StringTag;
 import net.minecraft.nbt.Tag;
 import net.minecraft.util.Identifier;
-import net.minecraft.util.JsonHelper;
 import net.minecraft.util.PacketByteBuf;
 import net.minecraft.util.Pair;
 import net.minecraft.util.registry.Registry;
@@ -37,6 +37,7 @@ import de.siphalor.nbtcrafting.api.nbt.NbtException;
 import de.siphalor.nbtcrafting.api.nbt.NbtIterator;
 import de.siphalor.nbtcrafting.api.nbt.NbtNumberRange;
 import de.siphalor.nbtcrafting.api.nbt.NbtUtil;
+import de.siphalor.nbtcrafting.network.SyncDictionary;
 
 public class IngredientEntryCondition {
 	public static final IngredientEntryCondition EMPTY = new IngredientEntryCondition(NbtUtil.EMPTY_COMPOUND, NbtUtil.EMPTY_COMPOUND);
@@ -44,6 +45,7 @@ public class IngredientEntryCondition {
 	public CompoundTag requiredElements;
 	public CompoundTag deniedElements;
 	private CompoundTag previewTag;
+	private NbtConditionMatcher matcher;
 
 	public IngredientEntryCondition() {
 		requiredElements = NbtUtil.EMPTY_COMPOUND;
@@ -59,11 +61,17 @@ public class IngredientEntryCondition {
 		if (!stack.hasTag()) {
 			return requiredElements.isEmpty();
 		}
-		CompoundTag tag = stack.getTag();
-		//noinspection ConstantConditions
-		if (!deniedElements.isEmpty() && NbtUtil.compoundsOverlap(tag, deniedElements))
-			return false;
-		return requiredElements.isEmpty() || NbtUtil.isCompoundContained(requiredElements, tag);
+		return getMatcher().matches(stack.getTag());
+	}
+
+	private NbtConditionMatcher getMatcher() {
+		NbtConditionMatcher matcher = this.matcher;
+		// the elements are public, so the matcher has to be recompiled if they get replaced
+		if (matcher == null || !matcher.isCompiledFrom(requiredElements, deniedElements)) {
+			matcher = NbtConditionMatcher.compile(requiredElements, deniedElements);
+			this.matcher = matcher;
+		}
+		return matcher;
 	}
 
 	public void addToJson(JsonObject json) {
@@ -98,18 +106,30 @@ public class IngredientEntryCondition {
 	}
 
 	public static IngredientEntryCondition fromJson(JsonObject json) {
+		return fromTag((CompoundTag) NbtUtil.asTag(json));
+	}
+
+	/**
+	 * Creates a condition from the converted <code>data</code> of an ingredient entry.
+	 *
+	 * @param data the converted <code>data</code> object, the condition may take ownership of it
+	 * @return the new condition
+	 */
+	public static IngredientEntryCondition fromTag(CompoundTag data) {
 		IngredientEntryCondition condition = new IngredientEntryCondition();
 
 		boolean flatObject = true;
 
-		if (json.has("require")) {
-			if (!json.get("require").isJsonObject())
+		if (data.contains("require")) {
+			if (!(data.get("require") instanceof CompoundTag))
 				throw new JsonParseException("data.require must be an object");
-			condition.requiredElements = (CompoundTag) NbtUtil.asTag(json.getAsJsonObject("require"));
+			condition.requiredElements = data.getCompound("require");
 			flatObject = false;
 		}
-		if (json.has("potion")) {
-			Identifier potion = new Identifier(JsonHelper.getString(json, "potion"));
+		if (data.contains("potion")) {
+			if (!(data.get("potion") instanceof StringTag))
+				throw new JsonSyntaxException("Expected potion to be a string");
+			Identifier potion = new Identifier(data.getString("potion"));
 			if (Registry.POTION.getOrEmpty(potion).isPresent()) {
 				if (condition.requiredElements == NbtUtil.EMPTY_COMPOUND) {
 					condition.requiredElements = new CompoundTag();
@@ -120,27 +140,31 @@ public class IngredientEntryCondition {
 			}
 			flatObject = false;
 		}
-		if (json.has("deny")) {
-			if (!json.get("deny").isJsonObject())
+		if (data.contains("deny")) {
+			if (!(data.get("deny") instanceof CompoundTag))
 				throw new JsonParseException("data.deny must be an object");
-			condition.deniedElements = (CompoundTag) NbtUtil.asTag(json.getAsJsonObject("deny"));
+			condition.deniedElements = data.getCompound("deny");
 			flatObject = false;
 		}
 
 		if (flatObject) {
-			condition.requiredElements = (CompoundTag) NbtUtil.asTag(json);
+			condition.requiredElements = data;
 		}
 
+		// compile at load time instead of on the first tested stack
+		condition.getMatcher();
 		return condition;
 	}
 
 	public void write(PacketByteBuf buf) {
-		buf.writeCompoundTag(requiredElements);
-		buf.writeCompoundTag(deniedElements);
+		SyncDictionary.writeCompoundTag(buf, requiredElements);
+		SyncDictionary.writeCompoundTag(buf, deniedElements);
 	}
 
 	public static IngredientEntryCondition read(PacketByteBuf buf) {
-		return new IngredientEntryCondition(buf.readCompoundTag(), buf.readCompoundTag());
+		IngredientEntryCondition condition = new IngredientEntryCondition(SyncDictionary.readCompoundTag(buf), SyncDictionary.readCompoundTag(buf));
+		condition.getMatcher();
+		return condition;
 	}
 
 }
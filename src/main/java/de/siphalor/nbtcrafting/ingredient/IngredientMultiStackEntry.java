@@ -23,30 +23,47 @@ import java.util.Collection;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntCollection;
 import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.ints.IntSets;
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.util.PacketByteBuf;
 import net.minecraft.util.registry.Registry;
 
+import de.siphalor.nbtcrafting.network.SyncDictionary;
 import de.siphalor.nbtcrafting.util.duck.IItemStack;
 
 public class IngredientMultiStackEntry extends IngredientEntry {
 
 	private final IngredientEntryCondition condition;
 	private final IntList itemIds;
+	private final IntSet itemIdSet;
 	private String tag;
 
 	public IngredientMultiStackEntry(Collection<Integer> items, IngredientEntryCondition condition) {
 		super();
 		this.condition = condition;
 		this.itemIds = new IntArrayList(items);
+		this.itemIdSet = IntSets.unmodifiable(new IntOpenHashSet(itemIds));
 		this.tag = "";
 	}
 
 	@Override
 	public boolean matches(ItemStack stack) {
-		return itemIds.contains(Registry.ITEM.getRawId(stack.getItem())) && condition.matches(stack);
+		return itemIdSet.contains(Registry.ITEM.getRawId(stack.getItem())) && condition.matches(stack);
+	}
+
+	@Override
+	public boolean matchesCondition(ItemStack stack) {
+		return condition.matches(stack);
+	}
+
+	@Override
+	public IntCollection getItemIds() {
+		return itemIdSet;
 	}
 
 	@Override
@@ -82,7 +99,7 @@ public class IngredientMultiStackEntry extends IngredientEntry {
 		this.condition.write(buf);
 		buf.writeBoolean(remainder != null);
 		if (remainder != null)
-			buf.writeItemStack(remainder);
+			SyncDictionary.writeItemStack(buf, remainder);
 	}
 
 	public static IngredientMultiStackEntry read(PacketByteBuf buf) {
@@ -93,7 +110,7 @@ public class IngredientMultiStackEntry extends IngredientEntry {
 		}
 		IngredientMultiStackEntry entry = new IngredientMultiStackEntry(ids, IngredientEntryCondition.read(buf));
 		if (buf.readBoolean())
-			entry.setRecipeRemainder(buf.readItemStack());
+			entry.setRecipeRemainder(SyncDictionary.readItemStack(buf));
 		return entry;
 	}
 
@@ -22,11 +22,14 @@ import java.util.Collections;
 
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import it.unimi.dsi.fastutil.ints.IntCollection;
+import it.unimi.dsi.fastutil.ints.IntSets;
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.util.PacketByteBuf;
 import net.minecraft.util.registry.Registry;
 
+import de.siphalor.nbtcrafting.network.SyncDictionary;
 import de.siphalor.nbtcrafting.util.duck.IItemStack;
 
 public class IngredientStackEntry extends IngredientEntry {
@@ -53,6 +56,16 @@ public class IngredientStackEntry extends IngredientEntry {
 		return Registry.ITEM.getRawId(stack.getItem()) == this.id && condition.matches(stack);
 	}
 
+	@Override
+	public boolean matchesCondition(ItemStack stack) {
+		return condition.matches(stack);
+	}
+
+	@Override
+	public IntCollection getItemIds() {
+		return IntSets.singleton(id);
+	}
+
 	@Override
 	public JsonElement toJson() {
 		JsonObject json = new JsonObject();
@@ -76,13 +89,13 @@ public class IngredientStackEntry extends IngredientEntry {
 		this.condition.write(buf);
 		buf.writeBoolean(remainder != null);
 		if (remainder != null)
-			buf.writeItemStack(remainder);
+			SyncDictionary.writeItemStack(buf, remainder);
 	}
 
 	public static IngredientStackEntry read(PacketByteBuf buf) {
 		IngredientStackEntry entry = new IngredientStackEntry(buf.readVarInt(), IngredientEntryCondition.read(buf));
 		if (buf.readBoolean())
-			entry.setRecipeRemainder(buf.readItemStack());
+			entry.setRecipeRemainder(SyncDictionary.readItemStack(buf));
 		return entry;
 	}
 
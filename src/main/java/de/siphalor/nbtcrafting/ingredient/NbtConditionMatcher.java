@@ -0,0 +1,400 @@
+/*
+ * Copyright 2020-2022 Siphalor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package de.siphalor.nbtcrafting.ingredient;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import net.minecraft.nbt.AbstractListTag;
+import net.minecraft.nbt.AbstractNumberTag;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.StringTag;
+import net.minecraft.nbt.Tag;
+
+import de.siphalor.nbtcrafting.api.nbt.NbtNumberRange;
+import de.siphalor.nbtcrafting.api.nbt.NbtUtil;
+
+/**
+ * The compiled form of the required and denied elements of an {@link IngredientEntryCondition}.
+ * <p>
+ * Matches exactly like {@link NbtUtil#isCompoundContained(CompoundTag, CompoundTag)} and {@link NbtUtil#compoundsOverlap(CompoundTag, CompoundTag)},
+ * but the type dispatch on the condition side and all parsing is done once at compile time.
+ * Each compound key gets a typed matcher and the keys are ordered, so that cheap and selective checks run first.
+ */
+public class NbtConditionMatcher {
+	private final CompoundTag requiredElements;
+	private final CompoundTag deniedElements;
+	private final TagMatcher required;
+	private final TagMatcher denied;
+
+	private NbtConditionMatcher(CompoundTag requiredElements, CompoundTag deniedElements) {
+		this.requiredElements = requiredElements;
+		this.deniedElements = deniedElements;
+		this.required = requiredElements == null || requiredElements.isEmpty() ? null : compileContained(requiredElements);
+		this.denied = deniedElements == null || deniedElements.isEmpty() ? null : compileOverlap(deniedElements);
+	}
+
+	public static NbtConditionMatcher compile(CompoundTag requiredElements, CompoundTag deniedElements) {
+		return new NbtConditionMatcher(requiredElements, deniedElements);
+	}
+
+	public boolean isCompiledFrom(CompoundTag requiredElements, CompoundTag deniedElements) {
+		return this.requiredElements == requiredElements && this.deniedElements == deniedElements;
+	}
+
+	/**
+	 * @param tag the tag of the tested stack
+	 * @return whether the tag contains all required elements and none of the denied ones
+	 */
+	public boolean matches(CompoundTag tag) {
+		if (denied != null && denied.matches(tag))
+			return false;
+		return required == null || required.matches(tag);
+	}
+
+	private static CompoundMatcher compileContained(CompoundTag reference) {
+		KeyMatcher[] keyMatchers = new KeyMatcher[reference.getSize()];
+		int i = 0;
+		for (String key : reference.getKeys()) {
+			Tag tag = reference.get(key);
+			TagMatcher matcher;
+			if (NbtUtil.isCompound(tag)) {
+				matcher = compileContained(NbtUtil.asCompoundTag(tag));
+			} else if (NbtUtil.isList(tag)) {
+				matcher = compileContainedList(NbtUtil.asListTag(tag));
+			} else {
+				matcher = compileScalar(tag);
+			}
+			keyMatchers[i++] = new KeyMatcher(key, matcher);
+		}
+		Arrays.sort(keyMatchers, Comparator.comparingInt(keyMatcher -> keyMatcher.matcher.getCost()));
+		return new CompoundMatcher(keyMatchers, true);
+	}
+
+	private static CompoundMatcher compileOverlap(CompoundTag reference) {
+		KeyMatcher[] keyMatchers = new KeyMatcher[reference.getSize()];
+		int i = 0;
+		for (String key : reference.getKeys()) {
+			Tag tag = reference.get(key);
+			TagMatcher matcher;
+			if (NbtUtil.isCompound(tag)) {
+				matcher = compileOverlap(NbtUtil.asCompoundTag(tag));
+			} else if (NbtUtil.isList(tag)) {
+				matcher = new OverlapListMatcher(NbtUtil.asListTag(tag));
+			} else {
+				matcher = compileScalar(tag);
+			}
+			keyMatchers[i++] = new KeyMatcher(key, matcher);
+		}
+		Arrays.sort(keyMatchers, Comparator.comparingInt(keyMatcher -> keyMatcher.matcher.getCost()));
+		return new CompoundMatcher(keyMatchers, false);
+	}
+
+	/**
+	 * Compiles the elements of a required list.
+	 * Note that {@link NbtUtil#isListContained(AbstractListTag, AbstractListTag)} compares scalar elements with swapped arguments,
+	 * so those are still delegated to {@link NbtUtil#tagsMatch(Tag, Tag)}.
+	 */
+	private static TagMatcher compileContainedList(AbstractListTag<Tag> reference) {
+		TagMatcher[] elementMatchers = new TagMatcher[reference.size()];
+		for (int i = 0; i < elementMatchers.length; i++) {
+			Tag element = reference.get(i);
+			if (NbtUtil.isCompound(element)) {
+				elementMatchers[i] = new ContainerElementMatcher(compileContained(NbtUtil.asCompoundTag(element)));
+			} else if (NbtUtil.isList(element)) {
+				elementMatchers[i] = new ContainerElementMatcher(compileContainedList(NbtUtil.asListTag(element)));
+			} else {
+				elementMatchers[i] = new SwappedScalarMatcher(element);
+			}
+		}
+		return new ContainedListMatcher(elementMatchers);
+	}
+
+	private static TagMatcher compileScalar(Tag reference) {
+		if (NbtUtil.isString(reference)) {
+			String string = reference.asString();
+			if (string.isEmpty()) {
+				return WildcardMatcher.INSTANCE;
+			}
+			if (string.startsWith("$")) {
+				NbtNumberRange range = NbtNumberRange.tryParse(string.substring(1));
+				return new RangeMatcher(string, range == null ? NbtNumberRange.ANY_INT : range);
+			}
+			return new StringMatcher(string);
+		}
+		if (NbtUtil.isNumeric(reference)) {
+			return new NumberMatcher(NbtUtil.asNumberTag(reference).getDouble());
+		}
+		return NeverMatcher.INSTANCE;
+	}
+
+	interface TagMatcher {
+		boolean matches(Tag tag);
+
+		/**
+		 * A rough estimate of the costs of this matcher, used to order the checks.
+		 */
+		int getCost();
+	}
+
+	static class KeyMatcher {
+		final String key;
+		final TagMatcher matcher;
+
+		KeyMatcher(String key, TagMatcher matcher) {
+			this.key = key;
+			this.matcher = matcher;
+		}
+	}
+
+	/**
+	 * Matches compounds in which all (<code>contained</code>) or any (not <code>contained</code>) of the keys match.
+	 */
+	static class CompoundMatcher implements TagMatcher {
+		private final String[] keys;
+		private final TagMatcher[] matchers;
+		private final boolean contained;
+		private final int cost;
+
+		CompoundMatcher(KeyMatcher[] keyMatchers, boolean contained) {
+			this.keys = new String[keyMatchers.length];
+			this.matchers = new TagMatcher[keyMatchers.length];
+			int cost = 10;
+			for (int i = 0; i < keyMatchers.length; i++) {
+				keys[i] = keyMatchers[i].key;
+				matchers[i] = keyMatchers[i].matcher;
+				cost += matchers[i].getCost();
+			}
+			this.contained = contained;
+			this.cost = cost;
+		}
+
+		@Override
+		public boolean matches(Tag tag) {
+			if (!(tag instanceof CompoundTag))
+				return false;
+			CompoundTag compound = (CompoundTag) tag;
+			if (contained) {
+				for (int i = 0; i < keys.length; i++) {
+					Tag child = compound.get(keys[i]);
+					if (child == null || !matchers[i].matches(child))
+						return false;
+				}
+				return true;
+			} else {
+				for (int i = 0; i < keys.length; i++) {
+					Tag child = compound.get(keys[i]);
+					if (child != null && matchers[i].matches(child))
+						return true;
+				}
+				return false;
+			}
+		}
+
+		@Override
+		public int getCost() {
+			return cost;
+		}
+	}
+
+	static class ContainedListMatcher implements TagMatcher {
+		private final TagMatcher[] elementMatchers;
+		private final int cost;
+
+		ContainedListMatcher(TagMatcher[] elementMatchers) {
+			this.elementMatchers = elementMatchers;
+			int cost = 20;
+			for (TagMatcher elementMatcher : elementMatchers) {
+				cost += elementMatcher.getCost() * 4;
+			}
+			this.cost = cost;
+		}
+
+		@Override
+		public boolean matches(Tag tag) {
+			if (!(tag instanceof AbstractListTag))
+				return false;
+			AbstractListTag<?> list = (AbstractListTag<?>) tag;
+			int size = list.size();
+			outer:
+			for (TagMatcher elementMatcher : elementMatchers) {
+				for (int i = 0; i < size; i++) {
+					if (elementMatcher.matches((Tag) list.get(i)))
+						continue outer;
+				}
+				return false;
+			}
+			return true;
+		}
+
+		@Override
+		public int getCost() {
+			return cost;
+		}
+	}
+
+	/**
+	 * Matches compound or list elements in required lists.
+	 * Due to the swapped comparison, an empty string acts as a wildcard on the tested side.
+	 */
+	static class ContainerElementMatcher implements TagMatcher {
+		private final TagMatcher matcher;
+
+		ContainerElementMatcher(TagMatcher matcher) {
+			this.matcher = matcher;
+		}
+
+		@Override
+		public boolean matches(Tag tag) {
+			if (tag instanceof StringTag)
+				return tag.asString().isEmpty();
+			return matcher.matches(tag);
+		}
+
+		@Override
+		public int getCost() {
+			return matcher.getCost();
+		}
+	}
+
+	static class SwappedScalarMatcher implements TagMatcher {
+		private final Tag reference;
+
+		SwappedScalarMatcher(Tag reference) {
+			this.reference = reference;
+		}
+
+		@Override
+		public boolean matches(Tag tag) {
+			return NbtUtil.tagsMatch(reference, tag);
+		}
+
+		@Override
+		public int getCost() {
+			return 4;
+		}
+	}
+
+	static class OverlapListMatcher implements TagMatcher {
+		private final AbstractListTag<Tag> reference;
+
+		OverlapListMatcher(AbstractListTag<Tag> reference) {
+			this.reference = reference;
+		}
+
+		@Override
+		public boolean matches(Tag tag) {
+			return tag instanceof AbstractListTag && NbtUtil.listsOverlap(NbtUtil.asListTag(tag), reference);
+		}
+
+		@Override
+		public int getCost() {
+			return 50;
+		}
+	}
+
+	static class WildcardMatcher implements TagMatcher {
+		static final WildcardMatcher INSTANCE = new WildcardMatcher();
+
+		@Override
+		public boolean matches(Tag tag) {
+			return true;
+		}
+
+		@Override
+		public int getCost() {
+			// checked last, as it only requires the key to be present
+			return 100;
+		}
+	}
+
+	static class NeverMatcher implements TagMatcher {
+		static final NeverMatcher INSTANCE = new NeverMatcher();
+
+		@Override
+		public boolean matches(Tag tag) {
+			return false;
+		}
+
+		@Override
+		public int getCost() {
+			return 0;
+		}
+	}
+
+	static class StringMatcher implements TagMatcher {
+		private final String string;
+
+		StringMatcher(String string) {
+			this.string = string;
+		}
+
+		@Override
+		public boolean matches(Tag tag) {
+			return tag instanceof StringTag && string.equals(tag.asString());
+		}
+
+		@Override
+		public int getCost() {
+			return 2;
+		}
+	}
+
+	static class NumberMatcher implements TagMatcher {
+		private final double number;
+
+		NumberMatcher(double number) {
+			this.number = number;
+		}
+
+		@Override
+		public boolean matches(Tag tag) {
+			return tag instanceof AbstractNumberTag && ((AbstractNumberTag) tag).getDouble() == number;
+		}
+
+		@Override
+		public int getCost() {
+			return 1;
+		}
+	}
+
+	/**
+	 * Matches numbers in the range; strings still have to be equal to the range's source.
+	 */
+	static class RangeMatcher implements TagMatcher {
+		private final String source;
+		private final NbtNumberRange range;
+
+		RangeMatcher(String source, NbtNumberRange range) {
+			this.source = source;
+			this.range = range;
+		}
+
+		@Override
+		public boolean matches(Tag tag) {
+			if (tag instanceof AbstractNumberTag)
+				return range.matches(((AbstractNumberTag) tag).getDouble());
+			return tag instanceof StringTag && source.equals(tag.asString());
+		}
+
+		@Override
+		public int getCost() {
+			return 3;
+		}
+	}
+}
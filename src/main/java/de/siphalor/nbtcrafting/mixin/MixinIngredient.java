@@ -19,8 +19,12 @@ package de.siphalor.nbtcrafting.mixin;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -28,6 +32,11 @@ import java.util.stream.StreamSupport;
 import com.google.gson.*;
 import com.mojang.brigadier.StringReader;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntCollection;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.loader.api.FabricLoader;
 import net.minecraft.item.Item;
@@ -52,8 +61,8 @@ import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
 import de.siphalor.nbtcrafting.NbtCrafting;
-import de.siphalor.nbtcrafting.api.JsonPreprocessor;
 import de.siphalor.nbtcrafting.ingredient.*;
+import de.siphalor.nbtcrafting.util.RecipeDataCache;
 import de.siphalor.nbtcrafting.util.duck.ICloneable;
 
 @Mixin(Ingredient.class)
@@ -61,8 +70,15 @@ public abstract class MixinIngredient implements IIngredient, ICloneable {
 	@Shadow
 	private ItemStack[] matchingStacks;
 
+	@Shadow
+	protected abstract void cacheMatchingStacks();
+
 	@Unique
 	private IngredientEntry[] advancedEntries;
+	@Unique
+	private Int2ObjectMap<IngredientEntry[]> advancedEntriesByItem;
+	@Unique
+	private Set<String> remainderReferences;
 
 	@Override
 	public Object clone() throws CloneNotSupportedException {
@@ -72,6 +88,7 @@ public abstract class MixinIngredient implements IIngredient, ICloneable {
 	@Inject(method = "<init>", at = @At("RETURN"))
 	private void onConstruct(@SuppressWarnings("rawtypes") Stream stream, CallbackInfo ci) {
 		advancedEntries = null;
+		advancedEntriesByItem = null;
 	}
 
 	@Inject(method = "cacheMatchingStacks", at = @At("HEAD"), cancellable = true)
@@ -102,10 +119,13 @@ public abstract class MixinIngredient implements IIngredient, ICloneable {
 				callbackInfoReturnable.setReturnValue(stack.isEmpty());
 				return;
 			}
-			for (IngredientEntry advancedEntry : advancedEntries) {
-				if (advancedEntry.matches(stack)) {
-					callbackInfoReturnable.setReturnValue(true);
-					return;
+			IngredientEntry[] candidates = advancedEntriesByItem.get(Registry.ITEM.getRawId(stack.getItem()));
+			if (candidates != null) {
+				for (IngredientEntry candidate : candidates) {
+					if (candidate.matchesCondition(stack)) {
+						callbackInfoReturnable.setReturnValue(true);
+						return;
+					}
 				}
 			}
 			callbackInfoReturnable.setReturnValue(false);
@@ -290,7 +310,7 @@ public abstract class MixinIngredient implements IIngredient, ICloneable {
 					e.printStackTrace();
 				}
 			} else if (jsonObject.get("data").isJsonObject()) {
-				return IngredientEntryCondition.fromJson((JsonObject) JsonPreprocessor.process(jsonObject.get("data").getAsJsonObject()));
+				return IngredientEntryCondition.fromTag(RecipeDataCache.getData(jsonObject.getAsJsonObject("data")));
 			}
 		}
 		return new IngredientEntryCondition();
@@ -304,14 +324,96 @@ public abstract class MixinIngredient implements IIngredient, ICloneable {
 	@Override
 	public void nbtCrafting$setAdvancedEntries(Stream<? extends IngredientEntry> entries) {
 		advancedEntries = entries.filter(Objects::nonNull).toArray(IngredientEntry[]::new);
+		advancedEntriesByItem = buildItemIndex(advancedEntries);
+		remainderReferences = null;
+	}
+
+	/**
+	 * Maps each raw item id to the entries that may match it, keeping the order of the entries.
+	 * Unindexed entries are candidates for all items and serve as the default value of the map.
+	 */
+	@Unique
+	private static Int2ObjectMap<IngredientEntry[]> buildItemIndex(IngredientEntry[] entries) {
+		Int2ObjectOpenHashMap<List<IngredientEntry>> lists = new Int2ObjectOpenHashMap<>();
+		List<IngredientEntry> wildcards = new ArrayList<>();
+		for (IngredientEntry entry : entries) {
+			IntCollection ids = entry.getItemIds();
+			if (ids == null) {
+				wildcards.add(entry);
+				for (List<IngredientEntry> list : lists.values()) {
+					list.add(entry);
+				}
+				continue;
+			}
+			IntIterator iterator = ids.iterator();
+			while (iterator.hasNext()) {
+				int id = iterator.nextInt();
+				List<IngredientEntry> list = lists.get(id);
+				if (list == null) {
+					list = new ArrayList<>(wildcards.size() + 1);
+					list.addAll(wildcards);
+					lists.put(id, list);
+				} else if (list.get(list.size() - 1) == entry) {
+					continue;
+				}
+				list.add(entry);
+			}
+		}
+		Int2ObjectOpenHashMap<IngredientEntry[]> index = new Int2ObjectOpenHashMap<>(lists.size());
+		for (Int2ObjectMap.Entry<List<IngredientEntry>> entry : lists.int2ObjectEntrySet()) {
+			index.put(entry.getIntKey(), entry.getValue().toArray(new IngredientEntry[0]));
+		}
+		if (!wildcards.isEmpty()) {
+			index.defaultReturnValue(wildcards.toArray(new IngredientEntry[0]));
+		}
+		return index;
+	}
+
+	@Override
+	public Set<String> nbtCrafting$getRemainderReferences() {
+		if (remainderReferences == null) {
+			if (advancedEntries == null) {
+				return Collections.emptySet();
+			}
+			Set<String> references = new HashSet<>();
+			for (IngredientEntry entry : advancedEntries) {
+				references.addAll(entry.getRemainderReferences());
+			}
+			remainderReferences = references.isEmpty() ? Collections.emptySet() : Collections.unmodifiableSet(references);
+		}
+		return remainderReferences;
+	}
+
+	@Override
+	public IntCollection nbtCrafting$getMatchingItemIds() {
+		if (advancedEntries != null) {
+			if (advancedEntries.length == 0 || advancedEntriesByItem.defaultReturnValue() != null) {
+				// only matches empty stacks or contains unindexed entries
+				return null;
+			}
+			return advancedEntriesByItem.keySet();
+		}
+		cacheMatchingStacks();
+		if (matchingStacks.length == 0) {
+			// only matches empty stacks
+			return null;
+		}
+		IntOpenHashSet ids = new IntOpenHashSet(matchingStacks.length);
+		for (ItemStack stack : matchingStacks) {
+			ids.add(Registry.ITEM.getRawId(stack.getItem()));
+		}
+		return ids;
 	}
 
 	@Override
 	public ItemStack nbtCrafting$getRecipeRemainder(ItemStack stack, Map<String, Object> reference) {
 		if (advancedEntries != null) {
-			for (IngredientEntry entry : advancedEntries) {
-				if (entry.matches(stack)) {
-					return entry.getRecipeRemainder(stack, reference);
+			IngredientEntry[] candidates = advancedEntriesByItem.get(Registry.ITEM.getRawId(stack.getItem()));
+			if (candidates != null) {
+				for (IngredientEntry candidate : candidates) {
+					if (candidate.matchesCondition(stack)) {
+						return candidate.getRecipeRemainder(stack, reference);
+					}
 				}
 			}
 		}
@@ -18,8 +18,10 @@
 package de.siphalor.nbtcrafting.mixin;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
 import net.minecraft.inventory.Inventory;
 import net.minecraft.item.ItemStack;
@@ -33,6 +35,7 @@ import org.spongepowered.asm.mixin.Shadow;
 
 import de.siphalor.nbtcrafting.api.RecipeUtil;
 import de.siphalor.nbtcrafting.api.recipe.NBTCRecipe;
+import de.siphalor.nbtcrafting.dollar.DollarReferenceFrame;
 import de.siphalor.nbtcrafting.ingredient.IIngredient;
 
 @Mixin(Recipe.class)
@@ -47,33 +50,68 @@ public interface MixinRecipe {
 	@Overwrite
 	default DefaultedList<ItemStack> getRemainingStacks(Inventory inventory) {
 		final DefaultedList<ItemStack> stackList = DefaultedList.ofSize(inventory.getInvSize(), ItemStack.EMPTY);
-		Map<String, Object> reference;
 		List<Ingredient> ingredients;
-		int[] resolvedIngredientStacks;
 		if (this instanceof NBTCRecipe) {
 			ingredients = new ArrayList<>(((NBTCRecipe<?>) this).getIngredients());
-			resolvedIngredientStacks = RecipeUtil.resolveIngredients(ingredients, inventory);
-			// noinspection unchecked
-			reference = ((NBTCRecipe<Inventory>) this).buildDollarReference(inventory, resolvedIngredientStacks);
 		} else {
 			ingredients = getPreviewInputs();
-			resolvedIngredientStacks = RecipeUtil.resolveIngredients(ingredients, inventory);
-			reference = RecipeUtil.buildReferenceMapFromResolvedIngredients(resolvedIngredientStacks, inventory);
 		}
 
-		for (int i = 0; i < stackList.size(); ++i) {
-			ItemStack stack = inventory.getInvStack(i);
-			int ingredientIndex = ArrayUtils.indexOf(resolvedIngredientStacks, i);
-			if (ingredientIndex >= 0) {
-				ItemStack remainder = ((IIngredient) (Object) ingredients.get(ingredientIndex)).nbtCrafting$getRecipeRemainder(stack, reference);
-				if (remainder != null) {
-					stackList.set(i, remainder);
-					continue;
+		boolean advanced = false;
+		Set<String> references = Collections.emptySet();
+		for (Ingredient ingredient : ingredients) {
+			IIngredient iIngredient = (IIngredient) (Object) ingredient;
+			if (iIngredient.nbtCrafting$isAdvanced()) {
+				advanced = true;
+				Set<String> ingredientReferences = iIngredient.nbtCrafting$getRemainderReferences();
+				if (!ingredientReferences.isEmpty()) {
+					if (references.isEmpty()) {
+						references = new HashSet<>();
+					}
+					references.addAll(ingredientReferences);
 				}
 			}
-			if (stack.getItem().hasRecipeRemainder()) {
-				stackList.set(i, new ItemStack(stack.getItem().getRecipeRemainder()));
+		}
+
+		if (!advanced) {
+			// no ingredient defines custom remainders, so the ingredients don't need to be resolved at all
+			for (int i = 0; i < stackList.size(); ++i) {
+				ItemStack stack = inventory.getInvStack(i);
+				if (stack.getItem().hasRecipeRemainder()) {
+					stackList.set(i, new ItemStack(stack.getItem().getRecipeRemainder()));
+				}
+			}
+			return stackList;
+		}
+
+		DollarReferenceFrame reference = DollarReferenceFrame.acquire();
+		try {
+			int[] resolvedIngredientStacks = RecipeUtil.resolveIngredients(ingredients, inventory);
+			if (!references.isEmpty()) {
+				if (this instanceof NBTCRecipe) {
+					// noinspection unchecked
+					((NBTCRecipe<Inventory>) this).fillDollarReference(inventory, resolvedIngredientStacks, reference);
+				} else {
+					RecipeUtil.fillReferenceFrameFromResolvedIngredients(reference, resolvedIngredientStacks, inventory, references);
+				}
+			}
+
+			for (int i = 0; i < stackList.size(); ++i) {
+				ItemStack stack = inventory.getInvStack(i);
+				int ingredientIndex = ArrayUtils.indexOf(resolvedIngredientStacks, i);
+				if (ingredientIndex >= 0) {
+					ItemStack remainder = ((IIngredient) (Object) ingredients.get(ingredientIndex)).nbtCrafting$getRecipeRemainder(stack, reference);
+					if (remainder != null) {
+						stackList.set(i, remainder);
+						continue;
+					}
+				}
+				if (stack.getItem().hasRecipeRemainder()) {
+					stackList.set(i, new ItemStack(stack.getItem().getRecipeRemainder()));
+				}
 			}
+		} finally {
+			reference.release();
 		}
 		return stackList;
 	}
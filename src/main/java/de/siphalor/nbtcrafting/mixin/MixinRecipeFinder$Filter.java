@@ -17,11 +17,10 @@
 
 package de.siphalor.nbtcrafting.mixin;
 
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.List;
 
-import it.unimi.dsi.fastutil.ints.IntAVLTreeSet;
-import it.unimi.dsi.fastutil.ints.IntCollection;
 import net.minecraft.recipe.Ingredient;
 import net.minecraft.recipe.Recipe;
 import net.minecraft.recipe.RecipeFinder;
@@ -31,6 +30,7 @@ import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 import de.siphalor.nbtcrafting.NbtCrafting;
+import de.siphalor.nbtcrafting.util.duck.IRecipeFinder;
 
 @Mixin(targets = "net/minecraft/recipe/RecipeFinder$Filter")
 public abstract class MixinRecipeFinder$Filter {
@@ -51,6 +51,16 @@ public abstract class MixinRecipeFinder$Filter {
 
 	@Unique
 	private RecipeFinder owner;
+	/**
+	 * The sorted ids of the finder at the time this filter was constructed.
+	 */
+	@Unique
+	private int[] matchIds;
+	/**
+	 * Bit <code>ingredient * matchIds.length + id index</code> is set if the ingredient matches the stack of the id.
+	 */
+	@Unique
+	private BitSet matchMatrix;
 
 	@SuppressWarnings({"UnresolvedMixinReference", "WeakerAccess"})
 	@Inject(
@@ -60,9 +70,9 @@ public abstract class MixinRecipeFinder$Filter {
 	public void onConstruct(RecipeFinder recipeFinder, Recipe<?> recipe, CallbackInfo ci) {
 		this.bitSet.clear();
 		for (int j = 0; j < ingredients.size(); j++) {
-			Ingredient ingredient = ingredients.get(j);
+			int offset = j * matchIds.length;
 			for (int i = 0; i < inputs.length; i++) {
-				if (ingredient.test(RecipeFinder.getStackFromId(inputs[i])))
+				if (matchMatrix.get(offset + Arrays.binarySearch(matchIds, inputs[i])))
 					this.bitSet.set(method_7420(true, i, j));
 			}
 		}
@@ -75,14 +85,28 @@ public abstract class MixinRecipeFinder$Filter {
 	@Overwrite
 	private int[] method_7422() {
 		owner = NbtCrafting.lastRecipeFinder;
-		IntCollection ints = new IntAVLTreeSet();
-		for (int id : owner.idToAmountMap.keySet()) {
-			for (Ingredient ingredient : ingredients) {
-				if (ingredient.test(RecipeFinder.getStackFromId(id)))
-					ints.add(id);
+		matchIds = owner.idToAmountMap.keySet().toIntArray();
+		Arrays.sort(matchIds);
+		matchMatrix = new BitSet(ingredients.size() * matchIds.length);
+
+		IRecipeFinder finder = (IRecipeFinder) owner;
+		BitSet matchingIds = new BitSet(matchIds.length);
+		for (int j = 0; j < ingredients.size(); j++) {
+			Ingredient ingredient = ingredients.get(j);
+			int offset = j * matchIds.length;
+			for (int i = 0; i < matchIds.length; i++) {
+				if (ingredient.test(finder.nbtCrafting$getCachedStack(matchIds[i]))) {
+					matchMatrix.set(offset + i);
+					matchingIds.set(i);
+				}
 			}
 		}
-		return ints.toIntArray();
+
+		int[] result = new int[matchingIds.cardinality()];
+		for (int i = matchingIds.nextSetBit(0), k = 0; i >= 0; i = matchingIds.nextSetBit(i + 1)) {
+			result[k++] = matchIds[i];
+		}
+		return result;
 	}
 
 	/**
@@ -92,11 +116,11 @@ public abstract class MixinRecipeFinder$Filter {
 	@Overwrite
 	private int method_7415() {
 		int result = Integer.MAX_VALUE;
-		for (final Ingredient ingredient : this.ingredients) {
+		for (int j = 0; j < ingredients.size(); j++) {
+			int offset = j * matchIds.length;
 			int maxPerIngredient = 0;
-			for (int id : owner.idToAmountMap.keySet()) {
-				if (ingredient.test(RecipeFinder.getStackFromId(id)))
-					maxPerIngredient = Math.max(maxPerIngredient, owner.idToAmountMap.get(id));
+			for (int i = matchMatrix.nextSetBit(offset); i >= 0 && i < offset + matchIds.length; i = matchMatrix.nextSetBit(i + 1)) {
+				maxPerIngredient = Math.max(maxPerIngredient, owner.idToAmountMap.get(matchIds[i - offset]));
 			}
 			if (result > 0) {
 				result = Math.min(result, maxPerIngredient);
@@ -17,29 +17,24 @@
 
 package de.siphalor.nbtcrafting.mixin;
 
-import java.util.concurrent.ExecutionException;
-
-import com.mojang.datafixers.util.Pair;
 import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.ints.IntList;
-import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
-import net.minecraft.nbt.CompoundTag;
 import net.minecraft.recipe.Recipe;
 import net.minecraft.recipe.RecipeFinder;
-import net.minecraft.util.registry.Registry;
 import org.spongepowered.asm.mixin.*;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
 import de.siphalor.nbtcrafting.NbtCrafting;
-import de.siphalor.nbtcrafting.api.nbt.NbtUtil;
-import de.siphalor.nbtcrafting.util.duck.IItemStack;
+import de.siphalor.nbtcrafting.util.duck.IRecipeFinder;
 
 @SuppressWarnings("ALL")
 @Mixin(RecipeFinder.class)
-public abstract class MixinRecipeFinder {
+public abstract class MixinRecipeFinder implements IRecipeFinder {
 	@Shadow
 	public abstract void addItem(final ItemStack stack);
 
@@ -48,8 +43,21 @@ public abstract class MixinRecipeFinder {
 	public Int2IntMap idToAmountMap;
 
 	@Unique
-	private static Pair<Integer, CompoundTag> getStackPair(ItemStack stack) {
-		return new Pair<Integer, CompoundTag>(Registry.ITEM.getRawId(stack.getItem()), NbtUtil.getTagOrEmpty(stack));
+	private final Int2ObjectOpenHashMap<ItemStack> stackCache = new Int2ObjectOpenHashMap<>();
+
+	@Inject(method = "clear", at = @At("HEAD"))
+	public void onClear(CallbackInfo ci) {
+		stackCache.clear();
+	}
+
+	@Override
+	public ItemStack nbtCrafting$getCachedStack(int id) {
+		ItemStack stack = stackCache.get(id);
+		if (stack == null) {
+			stack = getStackFromId(id);
+			stackCache.put(id, stack);
+		}
+		return stack;
 	}
 
 	@Inject(method = "findRecipe(Lnet/minecraft/recipe/Recipe;Lit/unimi/dsi/fastutil/ints/IntList;I)Z", at = @At("HEAD"))
@@ -77,18 +85,7 @@ public abstract class MixinRecipeFinder {
 	 */
 	@Overwrite
 	public static int getItemId(ItemStack stack) {
-		int id = -1;
-		if (stack.isEmpty()) {
-			id = 0;
-		} else {
-			Pair<Integer, CompoundTag> stackPair = getStackPair(stack);
-			try {
-				id = NbtCrafting.stack2IdMap.get(stackPair);
-			} catch (ExecutionException e) {
-				e.printStackTrace();
-			}
-		}
-		return id;
+		return NbtCrafting.STACK_ID_INTERNER.getId(stack);
 	}
 
 	/**
@@ -97,13 +94,6 @@ public abstract class MixinRecipeFinder {
 	 */
 	@Overwrite
 	public static ItemStack getStackFromId(final int id) {
-		synchronized (NbtCrafting.id2StackMap) {
-			if (NbtCrafting.id2StackMap.containsKey(id)) {
-				ItemStack result = new ItemStack(Item.byRawId(NbtCrafting.id2StackMap.get(id).getFirst()));
-				((IItemStack) (Object) result).nbtCrafting$setRawTag(NbtCrafting.id2StackMap.get(id).getSecond());
-				return result;
-			}
-		}
-		return ItemStack.EMPTY;
+		return NbtCrafting.STACK_ID_INTERNER.getStack(id);
 	}
 }
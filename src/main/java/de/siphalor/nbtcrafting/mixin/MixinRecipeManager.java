@@ -0,0 +1,80 @@
+/*
+ * Copyright 2020-2022 Siphalor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package de.siphalor.nbtcrafting.mixin;
+
+import java.util.Map;
+
+import com.google.gson.JsonObject;
+import net.minecraft.recipe.Recipe;
+import net.minecraft.recipe.RecipeManager;
+import net.minecraft.recipe.RecipeType;
+import net.minecraft.resource.ResourceManager;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.profiler.Profiler;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import de.siphalor.nbtcrafting.dollar.DollarParser;
+import de.siphalor.nbtcrafting.recipe.RecipeIndex;
+import de.siphalor.nbtcrafting.util.RecipeDataCache;
+import de.siphalor.nbtcrafting.util.duck.IRecipeManager;
+
+@Mixin(RecipeManager.class)
+public abstract class MixinRecipeManager implements IRecipeManager {
+	@Shadow
+	private Map<RecipeType<?>, Map<Identifier, Recipe<?>>> recipes;
+
+	@Unique
+	private volatile RecipeIndex recipeIndex;
+
+	@Inject(method = "apply(Ljava/util/Map;Lnet/minecraft/resource/ResourceManager;Lnet/minecraft/util/profiler/Profiler;)V", at = @At("HEAD"))
+	private void onApply(Map<Identifier, JsonObject> map, ResourceManager resourceManager, Profiler profiler, CallbackInfo callbackInfo) {
+		DollarParser.clearExpressionPool();
+		RecipeDataCache.prepare(map.values());
+	}
+
+	@Inject(method = "apply(Ljava/util/Map;Lnet/minecraft/resource/ResourceManager;Lnet/minecraft/util/profiler/Profiler;)V", at = @At("RETURN"))
+	private void onApplied(Map<Identifier, JsonObject> map, ResourceManager resourceManager, Profiler profiler, CallbackInfo callbackInfo) {
+		RecipeDataCache.clear();
+		recipeIndex = null;
+	}
+
+	@Inject(method = "setRecipes", at = @At("RETURN"))
+	private void onRecipesSet(Iterable<Recipe<?>> recipes, CallbackInfo callbackInfo) {
+		recipeIndex = null;
+	}
+
+	@Override
+	public RecipeIndex nbtCrafting$getRecipeIndex() {
+		RecipeIndex index = recipeIndex;
+		if (index == null) {
+			index = RecipeIndex.build(recipes);
+			recipeIndex = index;
+		}
+		return index;
+	}
+
+	@Override
+	public void nbtCrafting$invalidateRecipeIndex() {
+		recipeIndex = null;
+	}
+}
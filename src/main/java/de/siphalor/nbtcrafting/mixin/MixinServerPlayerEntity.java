@@ -27,6 +27,8 @@ import de.siphalor.nbtcrafting.util.duck.IServerPlayerEntity;
 public class MixinServerPlayerEntity implements IServerPlayerEntity {
 	@Unique
 	private boolean clientModPresent = false;
+	@Unique
+	private int clientModProtocolVersion = 0;
 
 	@Unique
 	@Override
@@ -39,4 +41,16 @@ public class MixinServerPlayerEntity implements IServerPlayerEntity {
 	public void nbtCrafting$setClientModPresent(boolean present) {
 		clientModPresent = present;
 	}
+
+	@Unique
+	@Override
+	public int nbtCrafting$getClientModProtocolVersion() {
+		return clientModProtocolVersion;
+	}
+
+	@Unique
+	@Override
+	public void nbtCrafting$setClientModProtocolVersion(int protocolVersion) {
+		clientModProtocolVersion = protocolVersion;
+	}
 }
@@ -42,6 +42,7 @@ import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 import de.siphalor.nbtcrafting.NbtCrafting;
 import de.siphalor.nbtcrafting.recipe.AnvilRecipe;
+import de.siphalor.nbtcrafting.util.duck.IRecipeManager;
 
 @Mixin(AnvilContainer.class)
 public abstract class MixinAnvilContainer extends Container implements IAnvilContainer {
@@ -89,7 +90,7 @@ public abstract class MixinAnvilContainer extends Container implements IAnvilCon
 
 	@Inject(method = "updateResult", at = @At("HEAD"), cancellable = true)
 	public void updateResult(CallbackInfo callbackInfo) {
-		recipe = player.world.getRecipeManager().getFirstMatch(NbtCrafting.ANVIL_RECIPE_TYPE, inventory, player.world).orElse(null);
+		recipe = ((IRecipeManager) player.world.getRecipeManager()).nbtCrafting$getRecipeIndex().getFirstAnvilMatch(inventory, player.world).orElse(null);
 		if (recipe != null) {
 			ItemStack resultStack = recipe.craft(inventory);
 			repairItemUsage = 1;
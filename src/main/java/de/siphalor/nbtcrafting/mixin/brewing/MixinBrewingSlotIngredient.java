@@ -17,8 +17,6 @@
 
 package de.siphalor.nbtcrafting.mixin.brewing;
 
-import java.util.Map;
-
 import net.fabricmc.api.EnvType;
 import net.fabricmc.loader.api.FabricLoader;
 import net.minecraft.block.entity.BrewingStandBlockEntity;
@@ -26,8 +24,6 @@ import net.minecraft.container.Slot;
 import net.minecraft.inventory.Inventory;
 import net.minecraft.item.ItemStack;
 import net.minecraft.recipe.BrewingRecipeRegistry;
-import net.minecraft.recipe.Recipe;
-import net.minecraft.util.Identifier;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
@@ -35,8 +31,7 @@ import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
 import de.siphalor.nbtcrafting.NbtCrafting;
 import de.siphalor.nbtcrafting.client.NbtCraftingClient;
-import de.siphalor.nbtcrafting.mixin.RecipeManagerAccessor;
-import de.siphalor.nbtcrafting.recipe.BrewingRecipe;
+import de.siphalor.nbtcrafting.util.duck.IRecipeManager;
 
 @Mixin(targets = "net/minecraft/container/BrewingStandContainer$SlotIngredient")
 public abstract class MixinBrewingSlotIngredient extends Slot {
@@ -50,18 +45,15 @@ public abstract class MixinBrewingSlotIngredient extends Slot {
 			callbackInfoReturnable.setReturnValue(true);
 			return;
 		}
-		RecipeManagerAccessor recipeManager;
+		IRecipeManager recipeManager;
 		if (inventory instanceof BrewingStandBlockEntity) {
-			recipeManager = (RecipeManagerAccessor) ((BrewingStandBlockEntity) inventory).getWorld().getRecipeManager();
+			recipeManager = (IRecipeManager) ((BrewingStandBlockEntity) inventory).getWorld().getRecipeManager();
 		} else if (FabricLoader.getInstance().getEnvironmentType() == EnvType.CLIENT) {
-			recipeManager = (RecipeManagerAccessor) NbtCraftingClient.getClientRecipeManager();
+			recipeManager = (IRecipeManager) NbtCraftingClient.getClientRecipeManager();
 		} else {
 			NbtCrafting.logError("Failed to get recipe manager in brewing stand container class!");
 			return;
 		}
-		Map<Identifier, Recipe<Inventory>> recipes = recipeManager.callGetAllOfType(NbtCrafting.BREWING_RECIPE_TYPE);
-		callbackInfoReturnable.setReturnValue(recipes.values().stream()
-				.anyMatch(recipe -> recipe instanceof BrewingRecipe && ((BrewingRecipe) recipe).getIngredient().test(stack))
-		);
+		callbackInfoReturnable.setReturnValue(recipeManager.nbtCrafting$getRecipeIndex().isBrewingIngredient(stack));
 	}
 }
@@ -17,24 +17,25 @@
 
 package de.siphalor.nbtcrafting.mixin.brewing;
 
-import java.util.Optional;
-
 import net.minecraft.block.entity.BlockEntityType;
 import net.minecraft.block.entity.BrewingStandBlockEntity;
 import net.minecraft.block.entity.LockableContainerBlockEntity;
 import net.minecraft.item.ItemStack;
 import net.minecraft.item.Items;
+import net.minecraft.nbt.CompoundTag;
 import net.minecraft.util.DefaultedList;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
-import de.siphalor.nbtcrafting.NbtCrafting;
 import de.siphalor.nbtcrafting.api.RecipeUtil;
 import de.siphalor.nbtcrafting.recipe.BrewingRecipe;
+import de.siphalor.nbtcrafting.recipe.RecipeIndex;
+import de.siphalor.nbtcrafting.util.duck.IRecipeManager;
 
 @SuppressWarnings("ConstantConditions")
 @Mixin(BrewingStandBlockEntity.class)
@@ -45,27 +46,88 @@ public abstract class MixinBrewingStandBlockEntity extends LockableContainerBloc
 	@Shadow
 	public abstract ItemStack getInvStack(int slot);
 
+	/**
+	 * Incremented on every change to the inventory, so that the matched recipe only gets resolved again after a change.
+	 */
+	@Unique
+	private int inventoryVersion;
+	@Unique
+	private int cachedInventoryVersion = -1;
+	@Unique
+	private RecipeIndex cachedRecipeIndex;
+	@Unique
+	private BrewingRecipe cachedRecipe;
+	@Unique
+	private int cachedBaseMask;
+
 	protected MixinBrewingStandBlockEntity(BlockEntityType<?> blockEntityType_1) {
 		super(blockEntityType_1);
 	}
 
+	@Unique
+	private BrewingRecipe getMatchingRecipe() {
+		// recipe reloads create a new index, which invalidates the cache as well
+		RecipeIndex recipeIndex = ((IRecipeManager) world.getRecipeManager()).nbtCrafting$getRecipeIndex();
+		if (cachedInventoryVersion != inventoryVersion || cachedRecipeIndex != recipeIndex) {
+			BrewingStandBlockEntity inv = (BrewingStandBlockEntity) (Object) this;
+			cachedRecipe = recipeIndex.getFirstBrewingMatch(inv, world).orElse(null);
+			cachedBaseMask = cachedRecipe == null ? 0 : cachedRecipe.getBaseMask(inv);
+			cachedInventoryVersion = inventoryVersion;
+			cachedRecipeIndex = recipeIndex;
+		}
+		return cachedRecipe;
+	}
+
+	@Override
+	public void markDirty() {
+		inventoryVersion++;
+		super.markDirty();
+	}
+
+	@Inject(method = "setInvStack", at = @At("HEAD"))
+	private void onSetInvStack(int slot, ItemStack stack, CallbackInfo callbackInfo) {
+		inventoryVersion++;
+	}
+
+	@Inject(method = "takeInvStack", at = @At("HEAD"))
+	private void onTakeInvStack(int slot, int amount, CallbackInfoReturnable<ItemStack> callbackInfoReturnable) {
+		inventoryVersion++;
+	}
+
+	@Inject(method = "removeInvStack", at = @At("HEAD"))
+	private void onRemoveInvStack(int slot, CallbackInfoReturnable<ItemStack> callbackInfoReturnable) {
+		inventoryVersion++;
+	}
+
+	@Inject(method = "clear", at = @At("HEAD"))
+	private void onClear(CallbackInfo callbackInfo) {
+		inventoryVersion++;
+	}
+
+	@Inject(method = "fromTag", at = @At("HEAD"))
+	private void onFromTag(CompoundTag tag, CallbackInfo callbackInfo) {
+		inventoryVersion++;
+	}
+
 	@Inject(method = "canCraft", at = @At("HEAD"), cancellable = true)
 	private void canCraft(CallbackInfoReturnable<Boolean> callbackInfoReturnable) {
-		Optional<BrewingRecipe> recipe = world.getRecipeManager().getFirstMatch(NbtCrafting.BREWING_RECIPE_TYPE, (BrewingStandBlockEntity) (Object) this, world);
-		if (recipe.isPresent()) {
+		if (getMatchingRecipe() != null) {
 			callbackInfoReturnable.setReturnValue(true);
 		}
 	}
 
 	@Inject(method = "craft", at = @At("HEAD"), cancellable = true)
 	private void craft(CallbackInfo callbackInfo) {
-		Optional<BrewingRecipe> recipe = world.getRecipeManager().getFirstMatch(NbtCrafting.BREWING_RECIPE_TYPE, (BrewingStandBlockEntity) (Object) this, world);
-		if (recipe.isPresent()) {
+		BrewingRecipe recipe = getMatchingRecipe();
+		if (recipe != null) {
 			BrewingStandBlockEntity inv = (BrewingStandBlockEntity) (Object) this;
-			DefaultedList<ItemStack> remainingStacks = recipe.get().getRemainingStacks(inv);
-			ItemStack[] results = recipe.get().craftAll(inv);
+			int baseMask = cachedBaseMask;
+			DefaultedList<ItemStack> remainingStacks = recipe.getRemainingStacks(inv, baseMask);
+			ItemStack[] results = recipe.craftAll(inv, baseMask);
 
 			getInvStack(3).decrement(1);
+			// the ingredient is modified in place
+			inventoryVersion++;
 			for (int i = 0; i < 3; i++) {
 				if (results[i] != null) {
 					setInvStack(i, results[i]);
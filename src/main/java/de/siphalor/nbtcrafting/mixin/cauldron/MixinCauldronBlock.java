@@ -35,9 +35,9 @@ import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
-import de.siphalor.nbtcrafting.NbtCrafting;
 import de.siphalor.nbtcrafting.recipe.cauldron.CauldronRecipe;
 import de.siphalor.nbtcrafting.recipe.cauldron.TemporaryCauldronInventory;
+import de.siphalor.nbtcrafting.util.duck.IRecipeManager;
 
 @Mixin(CauldronBlock.class)
 public class MixinCauldronBlock {
@@ -45,7 +45,7 @@ public class MixinCauldronBlock {
 	public void onActivate(BlockState blockState, World world, BlockPos blockPos, PlayerEntity playerEntity, Hand hand, BlockHitResult blockHitResult, CallbackInfoReturnable<ActionResult> callbackInfoReturnable) {
 		if (!world.isClient()) {
 			TemporaryCauldronInventory inventory = new TemporaryCauldronInventory(playerEntity, hand, world, blockPos);
-			Optional<CauldronRecipe> cauldronRecipe = world.getRecipeManager().getFirstMatch(NbtCrafting.CAULDRON_RECIPE_TYPE, inventory, world);
+			Optional<CauldronRecipe> cauldronRecipe = ((IRecipeManager) world.getRecipeManager()).nbtCrafting$getRecipeIndex().getFirstCauldronMatch(inventory, world);
 			if (cauldronRecipe.isPresent()) {
 				DefaultedList<ItemStack> remainingStacks = cauldronRecipe.get().getRemainingStacks(inventory);
 
@@ -25,6 +25,7 @@ import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 import de.siphalor.nbtcrafting.client.NbtCraftingClient;
+import de.siphalor.nbtcrafting.dollar.DollarParser;
 
 @Mixin(ClientPlayNetworkHandler.class)
 public abstract class MixinClientPlayNetworkHandler {
@@ -34,5 +35,7 @@ public abstract class MixinClientPlayNetworkHandler {
 		if (!NbtCraftingClient.sentModPresent) {
 			NbtCraftingClient.sendModPresent();
 		}
+		// the synchronized recipes have been read completely at this point
+		DollarParser.clearExpressionPool();
 	}
 }
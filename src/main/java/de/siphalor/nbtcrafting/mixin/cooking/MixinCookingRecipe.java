@@ -24,11 +24,13 @@ import net.minecraft.recipe.Ingredient;
 import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
 import de.siphalor.nbtcrafting.api.RecipeUtil;
+import de.siphalor.nbtcrafting.dollar.DollarTemplate;
 
 @Mixin(AbstractCookingRecipe.class)
 public class MixinCookingRecipe {
@@ -40,9 +42,20 @@ public class MixinCookingRecipe {
 	@Final
 	protected Ingredient input;
 
+	@Unique
+	private DollarTemplate resultTemplate;
+
+	@Unique
+	private DollarTemplate getResultTemplate() {
+		if (resultTemplate == null) {
+			resultTemplate = new DollarTemplate(output);
+		}
+		return resultTemplate;
+	}
+
 	@Inject(method = "craft", at = @At("HEAD"), cancellable = true)
 	public void craft(Inventory inventory, CallbackInfoReturnable<ItemStack> callbackInfoReturnable) {
-		ItemStack result = RecipeUtil.getDollarAppliedResult(output, input, inventory);
+		ItemStack result = RecipeUtil.getDollarAppliedResult(getResultTemplate(), "this", inventory);
 		if (result != null) callbackInfoReturnable.setReturnValue(result);
 	}
 }
@@ -40,23 +40,25 @@ import de.siphalor.nbtcrafting.util.duck.IItemStack;
 
 @Mixin(CookingRecipeSerializer.class)
 public abstract class MixinCookingRecipeSerializer {
+	// recipes may be deserialized on multiple threads
 	@Unique
-	private CompoundTag resultTag = null;
+	private final ThreadLocal<CompoundTag> resultTag = new ThreadLocal<>();
 
 	@Redirect(method = "read(Lnet/minecraft/util/Identifier;Lcom/google/gson/JsonObject;)Lnet/minecraft/recipe/AbstractCookingRecipe;", at = @At(value = "INVOKE", target = "net/minecraft/util/JsonHelper.getString(Lcom/google/gson/JsonObject;Ljava/lang/String;)Ljava/lang/String;", ordinal = 0))
 	public String getItemIdentifier(JsonObject jsonObject, String resultPropertyName) {
-		resultTag = null;
+		resultTag.remove();
 		if (!jsonObject.has(resultPropertyName) || !jsonObject.get(resultPropertyName).isJsonObject()) {
 			return JsonHelper.getString(jsonObject, resultPropertyName);
 		}
 		ItemStack output = ShapedRecipe.getItemStack(jsonObject.getAsJsonObject(resultPropertyName));
-		resultTag = output.getTag();
+		resultTag.set(output.getTag());
 		return Registry.ITEM.getId(output.getItem()).toString();
 	}
 
 	@Inject(method = "read(Lnet/minecraft/util/Identifier;Lcom/google/gson/JsonObject;)Lnet/minecraft/recipe/AbstractCookingRecipe;", at = @At(value = "TAIL"), locals = LocalCapture.CAPTURE_FAILHARD)
 	public void onRecipeReady(Identifier identifier, JsonObject jsonObject, CallbackInfoReturnable<AbstractCookingRecipe> callbackInfoReturnable, String group, JsonElement ingredientJson, Ingredient ingredient, String itemId, Identifier itemIdentifier, ItemStack stack, float experience, int cookingTime) {
 		//noinspection ConstantConditions
-		((IItemStack) (Object) stack).nbtCrafting$setRawTag(resultTag);
+		((IItemStack) (Object) stack).nbtCrafting$setRawTag(resultTag.get());
+		resultTag.remove();
 	}
 }
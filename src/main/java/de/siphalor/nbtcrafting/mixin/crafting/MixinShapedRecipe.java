@@ -17,12 +17,14 @@
 
 package de.siphalor.nbtcrafting.mixin.crafting;
 
+import java.util.Map;
+
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
 import com.mojang.brigadier.StringReader;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import net.minecraft.inventory.CraftingInventory;
-import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.StringNbtReader;
@@ -35,15 +37,14 @@ import net.minecraft.util.registry.Registry;
 import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
-import org.spongepowered.asm.mixin.injection.callback.LocalCapture;
 
-import de.siphalor.nbtcrafting.NbtCrafting;
-import de.siphalor.nbtcrafting.api.JsonPreprocessor;
 import de.siphalor.nbtcrafting.api.RecipeUtil;
-import de.siphalor.nbtcrafting.api.nbt.NbtUtil;
+import de.siphalor.nbtcrafting.dollar.DollarTemplate;
+import de.siphalor.nbtcrafting.util.RecipeDataCache;
 import de.siphalor.nbtcrafting.util.duck.IItemStack;
 
 @Mixin(ShapedRecipe.class)
@@ -56,6 +57,9 @@ public abstract class MixinShapedRecipe {
 	@Final
 	private DefaultedList<Ingredient> inputs;
 
+	@Unique
+	private DollarTemplate resultTemplate;
+
 	@Inject(method = "getItemStack", at = @At("HEAD"))
 	private static void handlePotions(JsonObject json, CallbackInfoReturnable<ItemStack> ci) {
 		if (json.has("potion")) {
@@ -73,42 +77,49 @@ public abstract class MixinShapedRecipe {
 		}
 	}
 
-	@Inject(
-			method = "getItemStack",
-			at = @At(value = "INVOKE", target = "com/google/gson/JsonObject.has(Ljava/lang/String;)Z", remap = false)
-	)
+	@Inject(method = "getItemStack", at = @At("HEAD"), cancellable = true)
 	private static void deserializeItemStack(JsonObject json, CallbackInfoReturnable<ItemStack> ci) {
-		NbtCrafting.clearLastReadNbt();
-		if (json.has("data")) {
-			if (JsonHelper.hasString(json, "data")) {
-				try {
-					NbtCrafting.setLastReadNbt(new StringNbtReader(new StringReader(json.get("data").getAsString())).parseCompoundTag());
-				} catch (CommandSyntaxException e) {
-					e.printStackTrace();
-				}
-			} else {
-				NbtCrafting.setLastReadNbt((CompoundTag) NbtUtil.asTag(JsonPreprocessor.process(JsonHelper.getObject(json, "data"))));
+		if (!json.has("data")) {
+			return;
+		}
+		CompoundTag data = null;
+		if (JsonHelper.hasString(json, "data")) {
+			try {
+				data = new StringNbtReader(new StringReader(json.get("data").getAsString())).parseCompoundTag();
+			} catch (CommandSyntaxException e) {
+				e.printStackTrace();
 			}
-			json.remove("data");
+		} else {
+			data = RecipeDataCache.getData(JsonHelper.getObject(json, "data"));
 		}
-	}
-
-	@Inject(
-			method = "getItemStack", at = @At("RETURN"), cancellable = true, locals = LocalCapture.CAPTURE_FAILHARD)
-	private static void constructDeserializedItemStack(JsonObject json, CallbackInfoReturnable<ItemStack> ci, String id, Item item, int amount) {
-		ItemStack stack = new ItemStack(item, amount);
-		if (NbtCrafting.hasLastReadNbt()) {
-			CompoundTag lastReadNbt = NbtCrafting.useLastReadNbt();
 
+		// vanilla disallows data, so the stack is created from the other properties
+		// the potion has already been applied above
+		JsonObject stackJson = new JsonObject();
+		for (Map.Entry<String, JsonElement> entry : json.entrySet()) {
+			if (!entry.getKey().equals("data") && !entry.getKey().equals("potion")) {
+				stackJson.add(entry.getKey(), entry.getValue());
+			}
+		}
+		ItemStack stack = ShapedRecipe.getItemStack(stackJson);
+		if (data != null) {
 			//noinspection ConstantConditions
-			((IItemStack) (Object) stack).nbtCrafting$setRawTag(lastReadNbt);
+			((IItemStack) (Object) stack).nbtCrafting$setRawTag(data);
 		}
 		ci.setReturnValue(stack);
 	}
 
+	@Unique
+	private DollarTemplate getResultTemplate() {
+		if (resultTemplate == null) {
+			resultTemplate = new DollarTemplate(output);
+		}
+		return resultTemplate;
+	}
+
 	@Inject(method = "craft", at = @At("HEAD"), cancellable = true)
 	public void craft(CraftingInventory craftingInventory, CallbackInfoReturnable<ItemStack> callbackInfoReturnable) {
-		ItemStack result = RecipeUtil.getDollarAppliedResult(output, inputs, craftingInventory);
+		ItemStack result = RecipeUtil.getDollarAppliedResult(getResultTemplate(), inputs, craftingInventory);
 		if (result != null) callbackInfoReturnable.setReturnValue(result);
 	}
 }
@@ -25,11 +25,13 @@ import net.minecraft.util.DefaultedList;
 import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
 import de.siphalor.nbtcrafting.api.RecipeUtil;
+import de.siphalor.nbtcrafting.dollar.DollarTemplate;
 
 @Mixin(ShapelessRecipe.class)
 public class MixinShapelessRecipe {
@@ -41,9 +43,20 @@ public class MixinShapelessRecipe {
 	@Final
 	private DefaultedList<Ingredient> input;
 
+	@Unique
+	private DollarTemplate resultTemplate;
+
+	@Unique
+	private DollarTemplate getResultTemplate() {
+		if (resultTemplate == null) {
+			resultTemplate = new DollarTemplate(output);
+		}
+		return resultTemplate;
+	}
+
 	@Inject(method = "craft", at = @At("HEAD"), cancellable = true)
 	public void craft(CraftingInventory craftingInventory, CallbackInfoReturnable<ItemStack> callbackInfoReturnable) {
-		ItemStack result = RecipeUtil.getDollarAppliedResult(output, input, craftingInventory);
+		ItemStack result = RecipeUtil.getDollarAppliedResult(getResultTemplate(), input, craftingInventory);
 		if (result != null) callbackInfoReturnable.setReturnValue(result);
 	}
 }
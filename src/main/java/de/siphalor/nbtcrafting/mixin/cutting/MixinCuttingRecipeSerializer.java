@@ -26,24 +26,28 @@ import net.minecraft.recipe.ShapedRecipe;
 import net.minecraft.util.JsonHelper;
 import net.minecraft.util.registry.Registry;
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Redirect;
 
 @Mixin(CuttingRecipe.Serializer.class)
 public class MixinCuttingRecipeSerializer {
-	private static ItemStack nbtCrafting_resultStack;
+	// recipes may be deserialized on multiple threads
+	@Unique
+	private static final ThreadLocal<ItemStack> nbtCrafting_resultStack = new ThreadLocal<>();
 
 	@Redirect(
 			method = "read(Lnet/minecraft/util/Identifier;Lcom/google/gson/JsonObject;)Lnet/minecraft/recipe/CuttingRecipe;",
 			at = @At(value = "INVOKE", target = "Lnet/minecraft/util/JsonHelper;getString(Lcom/google/gson/JsonObject;Ljava/lang/String;)Ljava/lang/String;")
 	)
 	public String getResultId(JsonObject jsonObject, String key) {
-		nbtCrafting_resultStack = null;
+		nbtCrafting_resultStack.remove();
 		if (jsonObject.has(key)) {
 			JsonElement jsonElement = jsonObject.get(key);
 			if (jsonElement instanceof JsonObject) {
-				nbtCrafting_resultStack = ShapedRecipe.getItemStack((JsonObject) jsonElement);
-				return Registry.ITEM.getId(nbtCrafting_resultStack.getItem()).toString();
+				ItemStack resultStack = ShapedRecipe.getItemStack((JsonObject) jsonElement);
+				nbtCrafting_resultStack.set(resultStack);
+				return Registry.ITEM.getId(resultStack.getItem()).toString();
 			}
 		}
 		return JsonHelper.getString(jsonObject, key);
@@ -57,8 +61,10 @@ public class MixinCuttingRecipeSerializer {
 			)
 	)
 	public ItemStack createStack(ItemConvertible itemConvertible, int count) {
-		if (nbtCrafting_resultStack == null)
+		ItemStack resultStack = nbtCrafting_resultStack.get();
+		nbtCrafting_resultStack.remove();
+		if (resultStack == null)
 			return new ItemStack(itemConvertible, count);
-		return nbtCrafting_resultStack;
+		return resultStack;
 	}
 }
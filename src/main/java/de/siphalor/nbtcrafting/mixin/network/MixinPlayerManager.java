@@ -18,13 +18,12 @@
 package de.siphalor.nbtcrafting.mixin.network;
 
 import de.siphalor.nbtcrafting.NbtCrafting;
+import de.siphalor.nbtcrafting.network.AdvancedRecipeSync;
 
-import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
 import net.minecraft.network.ClientConnection;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.PlayerManager;
 import net.minecraft.server.network.ServerPlayerEntity;
-import net.minecraft.util.PacketByteBuf;
 import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
@@ -65,15 +64,30 @@ public class MixinPlayerManager {
 	public void afterRecipeSync(ClientConnection connection, ServerPlayerEntity player, CallbackInfo ci) {
 		if (NbtCrafting.hasClientMod(player)) {
 			NbtCrafting.logInfo("Syncing advanced recipe data to player " + player.getEntityName());
-			List<PacketByteBuf> packets = NbtCrafting.createAdvancedRecipeSyncPackets(server.getRecipeManager());
-			for (PacketByteBuf packet : packets) {
-				ServerPlayNetworking.send(player, NbtCrafting.UPDATE_ADVANCED_RECIPES_PACKET_ID, packet);
-			}
+			AdvancedRecipeSync.syncJoined(server.getRecipeManager(), player);
 		} else {
 			NbtCrafting.logInfo("Skipping advanced recipe data synchronization for vanillish player " + player.getEntityName());
 		}
 	}
 
+	@Inject(
+			method = "disconnectAllPlayers",
+			at = @At("HEAD")
+	)
+	public void beforeDisconnectAllPlayers(CallbackInfo ci) {
+		// the server is stopping, so its encoded recipes mustn't be kept around until the next server starts
+		AdvancedRecipeSync.shutdown();
+	}
+
+	@Inject(
+			method = "onDataPacksReloaded",
+			at = @At("HEAD")
+	)
+	public void beforeDataPacksReloaded(CallbackInfo ci) {
+		// stop streaming the outdated recipes before the new vanilla recipes are sent
+		AdvancedRecipeSync.invalidate();
+	}
+
 	@Inject(
 			method = "onDataPacksReloaded",
 			at = @At("RETURN")
@@ -82,12 +96,7 @@ public class MixinPlayerManager {
 		List<ServerPlayerEntity> nbtcPlayers = players.stream().filter(NbtCrafting::hasClientMod).collect(Collectors.toList());
 		if (!nbtcPlayers.isEmpty()) {
 			NbtCrafting.logInfo("Syncing advanced recipe data to " + nbtcPlayers.size() + " players");
-			List<PacketByteBuf> packets = NbtCrafting.createAdvancedRecipeSyncPackets(server.getRecipeManager());
-			for (PacketByteBuf packet : packets) {
-				for (ServerPlayerEntity player : nbtcPlayers) {
-					ServerPlayNetworking.send(player, NbtCrafting.UPDATE_ADVANCED_RECIPES_PACKET_ID, packet);
-				}
-			}
+			AdvancedRecipeSync.syncReload(server.getRecipeManager(), nbtcPlayers);
 		} else {
 			NbtCrafting.logInfo("No advanced recipe data needs to be synced!");
 		}
@@ -0,0 +1,609 @@
+/*
+ * Copyright 2020-2022 Siphalor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package de.siphalor.nbtcrafting.network;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.minecraft.recipe.Ingredient;
+import net.minecraft.recipe.Recipe;
+import net.minecraft.recipe.RecipeManager;
+import net.minecraft.recipe.RecipeSerializer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.PacketByteBuf;
+import net.minecraft.util.registry.Registry;
+
+import de.siphalor.nbtcrafting.NbtCrafting;
+import de.siphalor.nbtcrafting.ingredient.IIngredient;
+import de.siphalor.nbtcrafting.util.duck.IServerPlayerEntity;
+
+/**
+ * Synchronizes recipes with advanced ingredients to clients with Nbt Crafting installed.
+ * <p>
+ * The recipes are encoded on a background thread and the chunks are streamed to the players as they are produced.
+ * Clients that support it get an end marker after the last chunk, so that they can apply all recipes at once.
+ * The encoded chunks are kept until the next data pack reload, so joining players don't cause any encoding.
+ * <p>
+ * Every encoding is a new generation. On reloads, clients that support it only get the recipes that changed
+ * since the previous generation. If their state doesn't match that generation, they request a full resync.
+ * <p>
+ * Joining players that support it are only offered the hash of the encoded chunks first,
+ * so that clients that have cached these chunks don't need to receive them again.
+ */
+public class AdvancedRecipeSync {
+	/**
+	 * The version of the sync protocol, exchanged in the login presence query.
+	 * <ul>
+	 *     <li>0: chunks are applied directly</li>
+	 *     <li>1: chunks are followed by an end marker</li>
+	 *     <li>2: end markers carry the generation and reloads are synced as deltas</li>
+	 *     <li>3: joining players are offered the hash of the chunks before they are sent</li>
+	 *     <li>4: chunks and deltas contain a {@link SyncDictionary}</li>
+	 * </ul>
+	 */
+	public static final int PROTOCOL_VERSION = 4;
+	public static final int CHUNK_HEADER = 0;
+	public static final int END_HEADER = -1;
+	public static final int DELTA_HEADER = -2;
+	public static final int OFFER_HEADER = -3;
+	public static final int DICTIONARY_CHUNK_HEADER = -4;
+	/**
+	 * The generation that is sent when the synced recipes don't represent a complete generation.
+	 */
+	public static final long UNKNOWN_GENERATION = 0;
+	/**
+	 * The initial value for {@link #hash(ByteBuf, long)}.
+	 */
+	public static final long HASH_SEED = 0xcbf29ce484222325L;
+	private static final int MAX_CHUNK_SIZE = 1_900_000; // max packet size is 2^21=2_097_152 bytes
+	private static final int PLAIN_FORMAT = 0;
+	private static final int DICTIONARY_FORMAT = 1;
+
+	private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "Nbt Crafting Recipe Sync");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private static final Object LOCK = new Object();
+	// one encoding per format, indexed by PLAIN_FORMAT and DICTIONARY_FORMAT
+	private static final Encoding[] currentEncodings = new Encoding[2];
+	/**
+	 * The last complete encodings before the latest reload, used as the base for deltas.
+	 */
+	private static final Encoding[] previousEncodings = new Encoding[2];
+
+	/**
+	 * Starts a full synchronization to the given players. This only enqueues work and returns immediately.
+	 *
+	 * @param recipeManager the server's recipe manager
+	 * @param players       the players with the client mod
+	 */
+	public static void sync(RecipeManager recipeManager, Collection<ServerPlayerEntity> players) {
+		synchronized (LOCK) {
+			for (ServerPlayerEntity player : players) {
+				getEncoding(recipeManager, getFormat(player)).addPlayer(player);
+			}
+		}
+	}
+
+	/**
+	 * Handles a client's request for a full synchronization, e.g. because it couldn't apply a delta.
+	 * Requests are ignored while a full synchronization to the player is pending and after the first one per generation.
+	 *
+	 * @param recipeManager the server's recipe manager
+	 * @param player        the requesting player
+	 */
+	public static void requestSync(RecipeManager recipeManager, ServerPlayerEntity player) {
+		synchronized (LOCK) {
+			Encoding encoding = getEncoding(recipeManager, getFormat(player));
+			if (encoding.listeners.contains(player) || !encoding.resyncedPlayers.add(player.getUuid())) {
+				NbtCrafting.logDebug("Ignoring repeated advanced recipe request from player " + player.getEntityName());
+				return;
+			}
+			encoding.addPlayer(player);
+		}
+	}
+
+	/**
+	 * Starts the synchronization to a joining player. Players that support it are only offered the hash of the chunks at first.
+	 *
+	 * @param recipeManager the server's recipe manager
+	 * @param player        the player with the client mod
+	 */
+	public static void syncJoined(RecipeManager recipeManager, ServerPlayerEntity player) {
+		synchronized (LOCK) {
+			Encoding encoding = getEncoding(recipeManager, getFormat(player));
+			if (getProtocolVersion(player) >= 3) {
+				encoding.addOfferPlayer(player);
+			} else {
+				encoding.addPlayer(player);
+			}
+		}
+	}
+
+	/**
+	 * Starts the synchronization after a data pack reload. Players that support it only get the changes since the last generation.
+	 *
+	 * @param recipeManager the server's recipe manager
+	 * @param players       the players with the client mod
+	 */
+	public static void syncReload(RecipeManager recipeManager, Collection<ServerPlayerEntity> players) {
+		synchronized (LOCK) {
+			for (ServerPlayerEntity player : players) {
+				int format = getFormat(player);
+				Encoding encoding = getEncoding(recipeManager, format);
+				if (previousEncodings[format] != null && getProtocolVersion(player) >= 2) {
+					encoding.addDeltaPlayer(player, previousEncodings[format]);
+				} else {
+					encoding.addPlayer(player);
+				}
+			}
+		}
+	}
+
+	// requires LOCK
+	private static Encoding getEncoding(RecipeManager recipeManager, int format) {
+		Encoding encoding = currentEncodings[format];
+		// reloads and server shutdowns drop the current encodings, so an existing encoding always belongs to the current recipes
+		if (encoding == null) {
+			encoding = new Encoding(new ArrayList<>(recipeManager.values()), format);
+			currentEncodings[format] = encoding;
+			EXECUTOR.execute(encoding);
+		}
+		return encoding;
+	}
+
+	private static int getFormat(ServerPlayerEntity player) {
+		return getProtocolVersion(player) >= 4 ? DICTIONARY_FORMAT : PLAIN_FORMAT;
+	}
+
+	/**
+	 * Cancels running encodings and drops the encoded chunks, must be called before the recipes are reloaded.
+	 * A complete encoding is kept as the base for the deltas of the next generation.
+	 */
+	public static void invalidate() {
+		synchronized (LOCK) {
+			for (int format = 0; format < currentEncodings.length; format++) {
+				if (previousEncodings[format] != null) {
+					previousEncodings[format].release();
+					previousEncodings[format] = null;
+				}
+				Encoding encoding = currentEncodings[format];
+				if (encoding != null) {
+					if (encoding.done && !encoding.failed) {
+						previousEncodings[format] = encoding;
+					} else {
+						encoding.cancel();
+					}
+					currentEncodings[format] = null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Cancels running encodings and drops all encoded chunks, including the bases for deltas.
+	 * Must be called when the server stops, so that its recipes and payloads aren't kept alive.
+	 */
+	public static void shutdown() {
+		synchronized (LOCK) {
+			for (int format = 0; format < currentEncodings.length; format++) {
+				if (previousEncodings[format] != null) {
+					previousEncodings[format].release();
+					previousEncodings[format] = null;
+				}
+				if (currentEncodings[format] != null) {
+					currentEncodings[format].cancel();
+					currentEncodings[format] = null;
+				}
+			}
+		}
+	}
+
+	public static boolean isAdvanced(Recipe<?> recipe) {
+		for (Ingredient ingredient : recipe.getPreviewInputs()) {
+			if (((IIngredient) (Object) ingredient).nbtCrafting$isAdvanced()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Encodes the given recipes into chunks of at most about 1.9 MB.
+	 *
+	 * @param recipes       the recipes to encode
+	 * @param chunkConsumer receives each finished chunk, returns <code>false</code> to abort the encoding
+	 */
+	public static void encode(List<Recipe<?>> recipes, Predicate<PacketByteBuf> chunkConsumer) {
+		encode(recipes, chunkConsumer, null, false);
+	}
+
+	private static void encode(List<Recipe<?>> recipes, Predicate<PacketByteBuf> chunkConsumer, Map<Identifier, EncodedRecipe> encodedRecipes, boolean useDictionary) {
+		// with a dictionary, the recipes are written separately, since the dictionary has to precede them
+		PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+		SyncDictionary.Writer dictionary = null;
+		if (useDictionary) {
+			dictionary = new SyncDictionary.Writer();
+		} else {
+			buf.writeVarInt(CHUNK_HEADER);
+		}
+		int headerSize = buf.readableBytes();
+
+		NbtCrafting.advancedIngredientSerializationEnabled.set(true);
+		SyncDictionary.setWriter(dictionary);
+		try {
+			for (Recipe<?> recipe : recipes) {
+				int start = buf.writerIndex();
+				if (dictionary != null) {
+					dictionary.startRecipe();
+				}
+				writeRecipe(buf, recipe);
+				if (encodedRecipes != null) {
+					if (dictionary == null) {
+						// slices stay valid when the buffer grows
+						ByteBuf data = buf.slice(start, buf.writerIndex() - start);
+						encodedRecipes.put(recipe.getId(), new EncodedRecipe(recipe, hash(data), data));
+					} else {
+						// the data would keep the whole chunk buffer alive, but deltas write dictionary recipes again anyway
+						encodedRecipes.put(recipe.getId(), new EncodedRecipe(recipe, dictionary.hashRecipe(buf, start, buf.writerIndex()), null));
+					}
+				}
+
+				if (buf.readableBytes() + (dictionary == null ? 0 : dictionary.getSize()) > MAX_CHUNK_SIZE) {
+					if (!chunkConsumer.test(finishChunk(buf, dictionary))) {
+						return;
+					}
+					buf = new PacketByteBuf(Unpooled.buffer());
+					if (useDictionary) {
+						dictionary = new SyncDictionary.Writer();
+						SyncDictionary.setWriter(dictionary);
+					} else {
+						buf.writeVarInt(CHUNK_HEADER);
+					}
+				}
+			}
+		} finally {
+			NbtCrafting.advancedIngredientSerializationEnabled.set(false);
+			SyncDictionary.setWriter(null);
+		}
+		if (buf.readableBytes() > headerSize) {
+			chunkConsumer.test(finishChunk(buf, dictionary));
+		}
+	}
+
+	private static PacketByteBuf finishChunk(PacketByteBuf buf, SyncDictionary.Writer dictionary) {
+		if (dictionary == null) {
+			return buf;
+		}
+		PacketByteBuf chunk = new PacketByteBuf(Unpooled.buffer(dictionary.getSize() + buf.readableBytes() + 16));
+		chunk.writeVarInt(DICTIONARY_CHUNK_HEADER);
+		dictionary.write(chunk);
+		chunk.writeBytes(buf, buf.readerIndex(), buf.readableBytes());
+		dictionary.release();
+		return chunk;
+	}
+
+	private static void writeRecipe(PacketByteBuf buf, Recipe<?> recipe) {
+		@SuppressWarnings("rawtypes")
+		RecipeSerializer serializer = recipe.getSerializer();
+		buf.writeIdentifier(Registry.RECIPE_SERIALIZER.getId(serializer));
+		buf.writeIdentifier(recipe.getId());
+		//noinspection unchecked
+		serializer.write(buf, recipe);
+	}
+
+	/**
+	 * 64-bit FNV-1a hash of the readable bytes.
+	 */
+	private static long hash(ByteBuf data) {
+		return hash(data, HASH_SEED);
+	}
+
+	/**
+	 * Continues a 64-bit FNV-1a hash with the readable bytes, used to hash the chunks of a complete encoding.
+	 *
+	 * @param data the bytes to hash
+	 * @param hash the hash of the previous bytes or {@link #HASH_SEED}
+	 * @return the resulting hash
+	 */
+	public static long hash(ByteBuf data, long hash) {
+		for (int i = data.readerIndex(), end = data.writerIndex(); i < end; i++) {
+			hash ^= data.getByte(i) & 0xff;
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	private static int getProtocolVersion(ServerPlayerEntity player) {
+		return ((IServerPlayerEntity) player).nbtCrafting$getClientModProtocolVersion();
+	}
+
+	private static void sendEndMarker(ServerPlayerEntity player, long generation) {
+		if (getProtocolVersion(player) < 1) {
+			return;
+		}
+		PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+		buf.writeVarInt(END_HEADER);
+		// ignored by protocol 1 clients
+		buf.writeVarLong(generation);
+		ServerPlayNetworking.send(player, NbtCrafting.UPDATE_ADVANCED_RECIPES_PACKET_ID, buf);
+	}
+
+	private static class EncodedRecipe {
+		final Recipe<?> recipe;
+		final long hash;
+		// only set for the plain format, the dictionary indices are specific to the chunk
+		final ByteBuf data;
+
+		EncodedRecipe(Recipe<?> recipe, long hash, ByteBuf data) {
+			this.recipe = recipe;
+			this.hash = hash;
+			this.data = data;
+		}
+	}
+
+	private static class Encoding implements Runnable {
+		private final List<Recipe<?>> recipes;
+		private final int format;
+		private final long generation;
+		// all following fields are guarded by LOCK
+		private final List<ByteBuf> payloads = new ArrayList<>();
+		private final Map<Identifier, EncodedRecipe> encodedRecipes = new HashMap<>();
+		private final List<ServerPlayerEntity> listeners = new ArrayList<>();
+		private final Map<ServerPlayerEntity, Encoding> deltaListeners = new HashMap<>();
+		private final List<ServerPlayerEntity> offerListeners = new ArrayList<>();
+		// players that have requested a full synchronization of this generation
+		private final Set<UUID> resyncedPlayers = new HashSet<>();
+		private long payloadHash = HASH_SEED;
+		private boolean done;
+		private boolean failed;
+		private boolean cancelled;
+		// the delta is the same for all players, since they share the same base
+		private Encoding deltaBase;
+		private ByteBuf deltaPayload;
+
+		Encoding(List<Recipe<?>> recipes, int format) {
+			this.recipes = recipes;
+			this.format = format;
+			long generation;
+			do {
+				generation = ThreadLocalRandom.current().nextLong();
+			} while (generation == UNKNOWN_GENERATION);
+			this.generation = generation;
+		}
+
+		void addPlayer(ServerPlayerEntity player) {
+			for (ByteBuf payload : payloads) {
+				ServerPlayNetworking.send(player, NbtCrafting.UPDATE_ADVANCED_RECIPES_PACKET_ID, new PacketByteBuf(payload.retainedDuplicate()));
+			}
+			if (done) {
+				sendEndMarker(player, generation);
+			} else {
+				listeners.add(player);
+			}
+		}
+
+		void addOfferPlayer(ServerPlayerEntity player) {
+			if (!done) {
+				offerListeners.add(player);
+			} else if (failed) {
+				addPlayer(player);
+			} else {
+				sendOffer(player);
+			}
+		}
+
+		void sendOffer(ServerPlayerEntity player) {
+			PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+			buf.writeVarInt(OFFER_HEADER);
+			buf.writeVarLong(generation);
+			buf.writeLong(payloadHash);
+			ServerPlayNetworking.send(player, NbtCrafting.UPDATE_ADVANCED_RECIPES_PACKET_ID, buf);
+		}
+
+		void addDeltaPlayer(ServerPlayerEntity player, Encoding base) {
+			if (done) {
+				sendDelta(player, base);
+			} else {
+				deltaListeners.put(player, base);
+			}
+		}
+
+		void sendDelta(ServerPlayerEntity player, Encoding base) {
+			if (deltaBase != base) {
+				deltaBase = base;
+				deltaPayload = createDeltaPayload(base);
+			}
+			if (deltaPayload == null) {
+				// too many changes for a single packet
+				addPlayer(player);
+			} else {
+				ServerPlayNetworking.send(player, NbtCrafting.UPDATE_ADVANCED_RECIPES_PACKET_ID, new PacketByteBuf(deltaPayload.retainedDuplicate()));
+			}
+		}
+
+		private ByteBuf createDeltaPayload(Encoding base) {
+			List<Identifier> removed = new ArrayList<>();
+			for (Identifier id : base.encodedRecipes.keySet()) {
+				if (!encodedRecipes.containsKey(id)) {
+					removed.add(id);
+				}
+			}
+			PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+			buf.writeVarInt(DELTA_HEADER);
+			buf.writeVarLong(base.generation);
+			buf.writeVarLong(generation);
+			buf.writeVarInt(removed.size());
+			for (Identifier id : removed) {
+				buf.writeIdentifier(id);
+			}
+			List<EncodedRecipe> changed = new ArrayList<>();
+			for (Map.Entry<Identifier, EncodedRecipe> entry : encodedRecipes.entrySet()) {
+				EncodedRecipe baseRecipe = base.encodedRecipes.get(entry.getKey());
+				if (baseRecipe == null || baseRecipe.hash != entry.getValue().hash) {
+					changed.add(entry.getValue());
+				}
+			}
+			if (format == DICTIONARY_FORMAT) {
+				writeDictionaryRecipes(buf, changed);
+			} else {
+				for (EncodedRecipe recipe : changed) {
+					buf.writeBytes(recipe.data, recipe.data.readerIndex(), recipe.data.readableBytes());
+				}
+			}
+
+			if (buf.readableBytes() > MAX_CHUNK_SIZE) {
+				buf.release();
+				return null;
+			}
+			return buf.asReadOnly();
+		}
+
+		private void writeDictionaryRecipes(PacketByteBuf buf, List<EncodedRecipe> recipes) {
+			// the recipes have to be written again, since their indices refer to the dictionaries of their chunks
+			SyncDictionary.Writer dictionary = new SyncDictionary.Writer();
+			PacketByteBuf recipeBuf = new PacketByteBuf(Unpooled.buffer());
+			NbtCrafting.advancedIngredientSerializationEnabled.set(true);
+			SyncDictionary.setWriter(dictionary);
+			try {
+				for (EncodedRecipe recipe : recipes) {
+					writeRecipe(recipeBuf, recipe.recipe);
+				}
+			} finally {
+				NbtCrafting.advancedIngredientSerializationEnabled.set(false);
+				SyncDictionary.setWriter(null);
+			}
+			dictionary.write(buf);
+			buf.writeBytes(recipeBuf);
+			dictionary.release();
+			recipeBuf.release();
+		}
+
+		void cancel() {
+			cancelled = true;
+			// the chunks that were already sent still have to be concluded
+			for (ServerPlayerEntity listener : listeners) {
+				sendEndMarker(listener, UNKNOWN_GENERATION);
+			}
+			listeners.clear();
+			// these players didn't get anything yet, so they're still at the base generation
+			deltaListeners.clear();
+			// these players will get the recipes from the synchronization after the reload
+			offerListeners.clear();
+			release();
+		}
+
+		void release() {
+			if (deltaPayload != null) {
+				deltaPayload.release();
+				deltaPayload = null;
+			}
+			for (ByteBuf payload : payloads) {
+				payload.release();
+			}
+			payloads.clear();
+			encodedRecipes.clear();
+		}
+
+		@Override
+		public void run() {
+			long startTime = System.currentTimeMillis();
+			List<Recipe<?>> advancedRecipes = new ArrayList<>();
+			for (Recipe<?> recipe : recipes) {
+				if (isAdvanced(recipe)) {
+					advancedRecipes.add(recipe);
+				}
+			}
+
+			Map<Identifier, EncodedRecipe> encodedRecipes = new HashMap<>();
+			try {
+				encode(advancedRecipes, chunk -> {
+					synchronized (LOCK) {
+						if (cancelled) {
+							return false;
+						}
+						ByteBuf payload = chunk.asReadOnly();
+						payloads.add(payload);
+						payloadHash = hash(payload, payloadHash);
+						for (ServerPlayerEntity listener : listeners) {
+							ServerPlayNetworking.send(listener, NbtCrafting.UPDATE_ADVANCED_RECIPES_PACKET_ID, new PacketByteBuf(payload.retainedDuplicate()));
+						}
+						return true;
+					}
+				}, encodedRecipes, format == DICTIONARY_FORMAT);
+			} catch (Throwable e) {
+				NbtCrafting.logError("Failed to encode advanced recipes for synchronization: " + e);
+				e.printStackTrace();
+				synchronized (LOCK) {
+					failed = true;
+				}
+			}
+
+			synchronized (LOCK) {
+				if (cancelled) {
+					return;
+				}
+				done = true;
+				if (!failed) {
+					this.encodedRecipes.putAll(encodedRecipes);
+				}
+				for (ServerPlayerEntity listener : listeners) {
+					sendEndMarker(listener, failed ? UNKNOWN_GENERATION : generation);
+				}
+				listeners.clear();
+				for (Map.Entry<ServerPlayerEntity, Encoding> entry : deltaListeners.entrySet()) {
+					if (failed) {
+						addPlayer(entry.getKey());
+					} else {
+						sendDelta(entry.getKey(), entry.getValue());
+					}
+				}
+				deltaListeners.clear();
+				for (ServerPlayerEntity listener : offerListeners) {
+					if (failed) {
+						addPlayer(listener);
+					} else {
+						sendOffer(listener);
+					}
+				}
+				offerListeners.clear();
+				if (previousEncodings[format] != null) {
+					// the deltas have been sent, so the base isn't needed anymore
+					previousEncodings[format].release();
+					previousEncodings[format] = null;
+				}
+			}
+			NbtCrafting.logDebug("Encoded " + advancedRecipes.size() + " advanced recipes in " + (System.currentTimeMillis() - startTime) + "ms");
+		}
+	}
+}
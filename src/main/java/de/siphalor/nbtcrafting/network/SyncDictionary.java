@@ -0,0 +1,197 @@
+/*
+ * Copyright 2020-2022 Siphalor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package de.siphalor.nbtcrafting.network;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.util.PacketByteBuf;
+
+/**
+ * Deduplicates the condition compounds and remainder stacks of advanced ingredients in a synchronization chunk.
+ * <p>
+ * While a dictionary is active on the current thread, these values are written and read as indices into it.
+ * The dictionary itself is sent in front of the recipes that use it. Index 0 stands for <code>null</code>.
+ */
+public class SyncDictionary {
+	private static final ThreadLocal<Writer> WRITER = new ThreadLocal<>();
+	private static final ThreadLocal<Reader> READER = new ThreadLocal<>();
+
+	public static void setWriter(Writer writer) {
+		WRITER.set(writer);
+	}
+
+	public static void setReader(Reader reader) {
+		READER.set(reader);
+	}
+
+	public static void writeCompoundTag(PacketByteBuf buf, CompoundTag compound) {
+		Writer writer = WRITER.get();
+		if (writer == null) {
+			buf.writeCompoundTag(compound);
+		} else {
+			writer.writeReference(buf, writer.compounds, compound, compound);
+		}
+	}
+
+	public static CompoundTag readCompoundTag(PacketByteBuf buf) {
+		Reader reader = READER.get();
+		if (reader == null) {
+			return buf.readCompoundTag();
+		}
+		int index = buf.readVarInt();
+		// compounds of conditions are never modified, so they can be shared
+		return index == 0 ? null : reader.compounds[index - 1];
+	}
+
+	public static void writeItemStack(PacketByteBuf buf, ItemStack stack) {
+		Writer writer = WRITER.get();
+		if (writer == null) {
+			buf.writeItemStack(stack);
+		} else {
+			writer.writeReference(buf, writer.stacks, stack == null ? null : stack.toTag(new CompoundTag()), stack);
+		}
+	}
+
+	public static ItemStack readItemStack(PacketByteBuf buf) {
+		Reader reader = READER.get();
+		if (reader == null) {
+			return buf.readItemStack();
+		}
+		int index = buf.readVarInt();
+		return index == 0 ? null : reader.stacks[index - 1].copy();
+	}
+
+	public static class Writer {
+		private final Entries compounds = new Entries();
+		private final Entries stacks = new Entries();
+		// start and end indices of the references in the current recipe
+		private final IntList references = new IntArrayList();
+		private final LongList referenceHashes = new LongArrayList();
+
+		private void writeReference(PacketByteBuf buf, Entries entries, CompoundTag key, Object value) {
+			int index = 0;
+			long hash = 0;
+			if (key != null) {
+				index = entries.indices.getInt(key);
+				if (index == 0) {
+					int start = entries.data.writerIndex();
+					if (value instanceof ItemStack) {
+						entries.data.writeItemStack((ItemStack) value);
+					} else {
+						entries.data.writeCompoundTag((CompoundTag) value);
+					}
+					entries.hashes.add(AdvancedRecipeSync.hash(entries.data.slice(start, entries.data.writerIndex() - start), AdvancedRecipeSync.HASH_SEED));
+					index = entries.hashes.size();
+					entries.indices.put(key, index);
+				}
+				hash = entries.hashes.getLong(index - 1);
+			}
+			references.add(buf.writerIndex());
+			buf.writeVarInt(index);
+			references.add(buf.writerIndex());
+			referenceHashes.add(hash);
+		}
+
+		/**
+		 * Must be called before a recipe is written.
+		 */
+		public void startRecipe() {
+			references.clear();
+			referenceHashes.clear();
+		}
+
+		/**
+		 * Hashes the current recipe, so that it doesn't depend on the indices of the referenced entries.
+		 *
+		 * @param buf   the buffer that the recipe has been written to
+		 * @param start the index of the first byte of the recipe
+		 * @param end   the index after the last byte of the recipe
+		 * @return the hash of the recipe
+		 */
+		public long hashRecipe(ByteBuf buf, int start, int end) {
+			long hash = AdvancedRecipeSync.HASH_SEED;
+			int position = start;
+			for (int i = 0; i < referenceHashes.size(); i++) {
+				int referenceStart = references.getInt(i * 2);
+				hash = AdvancedRecipeSync.hash(buf.slice(position, referenceStart - position), hash);
+				long referenceHash = referenceHashes.getLong(i);
+				for (int shift = 0; shift < 64; shift += 8) {
+					hash ^= (referenceHash >>> shift) & 0xff;
+					hash *= 0x100000001b3L;
+				}
+				position = references.getInt(i * 2 + 1);
+			}
+			return AdvancedRecipeSync.hash(buf.slice(position, end - position), hash);
+		}
+
+		/**
+		 * @return the number of bytes that {@link #write(PacketByteBuf)} is going to write, excluding the counts
+		 */
+		public int getSize() {
+			return compounds.data.readableBytes() + stacks.data.readableBytes();
+		}
+
+		public void write(PacketByteBuf buf) {
+			buf.writeVarInt(compounds.hashes.size());
+			buf.writeBytes(compounds.data, compounds.data.readerIndex(), compounds.data.readableBytes());
+			buf.writeVarInt(stacks.hashes.size());
+			buf.writeBytes(stacks.data, stacks.data.readerIndex(), stacks.data.readableBytes());
+		}
+
+		public void release() {
+			compounds.data.release();
+			stacks.data.release();
+		}
+	}
+
+	private static class Entries {
+		final Object2IntMap<CompoundTag> indices = new Object2IntOpenHashMap<>();
+		final PacketByteBuf data = new PacketByteBuf(Unpooled.buffer());
+		final LongList hashes = new LongArrayList();
+	}
+
+	public static class Reader {
+		private final CompoundTag[] compounds;
+		private final ItemStack[] stacks;
+
+		private Reader(CompoundTag[] compounds, ItemStack[] stacks) {
+			this.compounds = compounds;
+			this.stacks = stacks;
+		}
+
+		public static Reader read(PacketByteBuf buf) {
+			CompoundTag[] compounds = new CompoundTag[buf.readVarInt()];
+			for (int i = 0; i < compounds.length; i++) {
+				compounds[i] = buf.readCompoundTag();
+			}
+			ItemStack[] stacks = new ItemStack[buf.readVarInt()];
+			for (int i = 0; i < stacks.length; i++) {
+				stacks[i] = buf.readItemStack();
+			}
+			return new Reader(compounds, stacks);
+		}
+	}
+}
@@ -17,9 +17,6 @@
 
 package de.siphalor.nbtcrafting.recipe;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import net.minecraft.inventory.Inventory;
 import net.minecraft.item.ItemStack;
 import net.minecraft.recipe.Ingredient;
@@ -32,6 +29,7 @@ import net.minecraft.world.World;
 import de.siphalor.nbtcrafting.NbtCrafting;
 import de.siphalor.nbtcrafting.api.RecipeUtil;
 import de.siphalor.nbtcrafting.api.nbt.NbtUtil;
+import de.siphalor.nbtcrafting.dollar.DollarReferenceFrame;
 
 public class BrewingRecipe extends IngredientRecipe<Inventory> {
 	public static final RecipeSerializer<BrewingRecipe> SERIALIZER = new IngredientRecipe.Serializer<>(BrewingRecipe::new);
@@ -42,42 +40,67 @@ public class BrewingRecipe extends IngredientRecipe<Inventory> {
 
 	@Override
 	public boolean matches(Inventory inv, World world) {
-		if (ingredient.test(inv.getInvStack(3))) {
-			for (int i = 0; i < 3; i++) {
-				if (base.test(inv.getInvStack(i)))
-					return true;
-			}
+		return ingredient.test(inv.getInvStack(3)) && getBaseMask(inv) != 0;
+	}
+
+	/**
+	 * Tests the base against the three bottle slots.
+	 *
+	 * @param inv the brewing inventory
+	 * @return a bit mask where bit <code>i</code> is set if the base matches slot <code>i</code>
+	 */
+	public int getBaseMask(Inventory inv) {
+		int mask = 0;
+		for (int i = 0; i < 3; i++) {
+			if (base.test(inv.getInvStack(i)))
+				mask |= 1 << i;
 		}
-		return false;
+		return mask;
 	}
 
 	public ItemStack[] craftAll(Inventory inv) {
+		return craftAll(inv, getBaseMask(inv));
+	}
+
+	public ItemStack[] craftAll(Inventory inv, int baseMask) {
 		ItemStack[] stacks = new ItemStack[3];
 
-		Map<String, Object> reference = new HashMap<>();
-		reference.put("ingredient", NbtUtil.getTagOrEmpty(inv.getInvStack(3)));
+		DollarReferenceFrame reference = DollarReferenceFrame.acquire();
+		try {
+			reference.put("ingredient", NbtUtil.getTagOrEmpty(inv.getInvStack(3)));
 
-		for (int i = 0; i < 3; i++) {
-			if (base.test(inv.getInvStack(i))) {
-				reference.put("base", NbtUtil.getTagOrEmpty(inv.getInvStack(i)));
-				stacks[i] = RecipeUtil.applyDollars(result.copy(), resultDollars, reference);
+			for (int i = 0; i < 3; i++) {
+				if ((baseMask & 1 << i) != 0) {
+					reference.put("base", NbtUtil.getTagOrEmpty(inv.getInvStack(i)));
+					stacks[i] = RecipeUtil.applyDollars(result.copy(), resultDollars, reference);
+				}
 			}
+		} finally {
+			reference.release();
 		}
 		return stacks;
 	}
 
 	@Override
 	public DefaultedList<ItemStack> getRemainingStacks(Inventory inv) {
+		return getRemainingStacks(inv, getBaseMask(inv));
+	}
+
+	public DefaultedList<ItemStack> getRemainingStacks(Inventory inv, int baseMask) {
 		DefaultedList<ItemStack> stacks = DefaultedList.ofSize(4, ItemStack.EMPTY);
-		Map<String, Object> reference = new HashMap<>();
-		reference.put("ingredient", NbtUtil.getTagOrEmpty(inv.getInvStack(3)));
-		stacks.set(3, RecipeUtil.getRemainder(inv.getInvStack(3), ingredient, reference));
+		DollarReferenceFrame reference = DollarReferenceFrame.acquire();
+		try {
+			reference.put("ingredient", NbtUtil.getTagOrEmpty(inv.getInvStack(3)));
+			stacks.set(3, RecipeUtil.getRemainder(inv.getInvStack(3), ingredient, reference));
 
-		for (int i = 0; i < 3; i++) {
-			if (base.test(inv.getInvStack(i))) {
-				reference.put("base", NbtUtil.getTagOrEmpty(inv.getInvStack(i)));
-				stacks.set(i, RecipeUtil.getRemainder(inv.getInvStack(i), base, reference));
+			for (int i = 0; i < 3; i++) {
+				if ((baseMask & 1 << i) != 0) {
+					reference.put("base", NbtUtil.getTagOrEmpty(inv.getInvStack(i)));
+					stacks.set(i, RecipeUtil.getRemainder(inv.getInvStack(i), base, reference));
+				}
 			}
+		} finally {
+			reference.release();
 		}
 		return stacks;
 	}
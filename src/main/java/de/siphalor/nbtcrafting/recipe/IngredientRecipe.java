@@ -38,8 +38,16 @@ import de.siphalor.nbtcrafting.api.nbt.NbtUtil;
 import de.siphalor.nbtcrafting.api.recipe.NBTCRecipe;
 import de.siphalor.nbtcrafting.dollar.Dollar;
 import de.siphalor.nbtcrafting.dollar.DollarParser;
+import de.siphalor.nbtcrafting.dollar.DollarReferenceFrame;
 
 public abstract class IngredientRecipe<I extends Inventory> implements NBTCRecipe<I>, ServerRecipe {
+	private static final ClassValue<Boolean> MAP_BASED_REFERENCES = new ClassValue<Boolean>() {
+		@Override
+		protected Boolean computeValue(Class<?> type) {
+			return RecipeUtil.overridesDollarReferenceBuilder(type, IngredientRecipe.class, Inventory.class);
+		}
+	};
+
 	private final Identifier identifier;
 	protected final Ingredient base;
 	protected final Ingredient ingredient;
@@ -69,7 +77,13 @@ public abstract class IngredientRecipe<I extends Inventory> implements NBTCRecip
 
 	@Override
 	public ItemStack craft(I inv) {
-		return RecipeUtil.applyDollars(result.copy(), resultDollars, buildDollarReference(inv));
+		DollarReferenceFrame frame = DollarReferenceFrame.acquire();
+		try {
+			fillDollarReference(inv, null, frame);
+			return RecipeUtil.applyDollars(result.copy(), resultDollars, frame);
+		} finally {
+			frame.release();
+		}
 	}
 
 	@Override
@@ -102,6 +116,20 @@ public abstract class IngredientRecipe<I extends Inventory> implements NBTCRecip
 		);
 	}
 
+	/**
+	 * Fills the references directly; subclasses that override {@link #buildDollarReference(Inventory)} keep their maps instead.
+	 * New subclasses should override this method.
+	 */
+	@Override
+	public void fillDollarReference(I inv, int[] ingredientToStackResolution, DollarReferenceFrame frame) {
+		if (MAP_BASED_REFERENCES.get(getClass())) {
+			frame.putAll(buildDollarReference(inv, ingredientToStackResolution));
+			return;
+		}
+		frame.put("base", NbtUtil.getTagOrEmpty(inv.getInvStack(0)));
+		frame.put("ingredient", NbtUtil.getTagOrEmpty(inv.getInvStack(1)));
+	}
+
 	public void readCustomData(JsonObject json) {
 	}
 
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2020-2022 Siphalor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package de.siphalor.nbtcrafting.recipe;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntCollection;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import net.minecraft.inventory.Inventory;
+import net.minecraft.item.ItemStack;
+import net.minecraft.recipe.Ingredient;
+import net.minecraft.recipe.Recipe;
+import net.minecraft.recipe.RecipeType;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.registry.Registry;
+import net.minecraft.world.World;
+
+import de.siphalor.nbtcrafting.NbtCrafting;
+import de.siphalor.nbtcrafting.ingredient.IIngredient;
+import de.siphalor.nbtcrafting.recipe.cauldron.CauldronRecipe;
+
+/**
+ * Maps item ids to the recipes of the custom recipe types that may match them.
+ * <p>
+ * Candidates are kept in the order of the recipe manager, so the first matching candidate is the same recipe
+ * that {@link net.minecraft.recipe.RecipeManager#getFirstMatch(RecipeType, Inventory, World)} would return.
+ * Recipes with ingredients that can't be indexed are candidates for every item.
+ */
+public class RecipeIndex {
+	private final ItemIndex<AnvilRecipe> anvilByBase;
+	private final ItemIndex<BrewingRecipe> brewingByIngredient;
+	private final ItemIndex<BrewingRecipe> brewingByBase;
+	private final ItemIndex<CauldronRecipe> cauldronByInput;
+
+	private RecipeIndex(Map<RecipeType<?>, Map<Identifier, Recipe<?>>> recipes) {
+		anvilByBase = ItemIndex.build(recipes.get(NbtCrafting.ANVIL_RECIPE_TYPE), AnvilRecipe.class, AnvilRecipe::getBase);
+		brewingByIngredient = ItemIndex.build(recipes.get(NbtCrafting.BREWING_RECIPE_TYPE), BrewingRecipe.class, BrewingRecipe::getIngredient);
+		brewingByBase = ItemIndex.build(recipes.get(NbtCrafting.BREWING_RECIPE_TYPE), BrewingRecipe.class, BrewingRecipe::getBase);
+		cauldronByInput = ItemIndex.build(recipes.get(NbtCrafting.CAULDRON_RECIPE_TYPE), CauldronRecipe.class, recipe -> recipe.input);
+	}
+
+	public static RecipeIndex build(Map<RecipeType<?>, Map<Identifier, Recipe<?>>> recipes) {
+		return new RecipeIndex(recipes);
+	}
+
+	public Optional<AnvilRecipe> getFirstAnvilMatch(Inventory inventory, World world) {
+		return getFirstMatch(anvilByBase.getCandidates(inventory.getInvStack(0)), inventory, world);
+	}
+
+	public Optional<BrewingRecipe> getFirstBrewingMatch(Inventory inventory, World world) {
+		return getFirstMatch(brewingByIngredient.getCandidates(inventory.getInvStack(3)), inventory, world);
+	}
+
+	public Optional<CauldronRecipe> getFirstCauldronMatch(Inventory inventory, World world) {
+		return getFirstMatch(cauldronByInput.getCandidates(inventory.getInvStack(0)), inventory, world);
+	}
+
+	public boolean isBrewingIngredient(ItemStack stack) {
+		for (Recipe<?> recipe : brewingByIngredient.getCandidates(stack)) {
+			if (recipe instanceof BrewingRecipe && ((BrewingRecipe) recipe).getIngredient().test(stack))
+				return true;
+		}
+		return false;
+	}
+
+	public boolean isBrewingBase(ItemStack stack) {
+		for (Recipe<?> recipe : brewingByBase.getCandidates(stack)) {
+			if (recipe instanceof BrewingRecipe && ((BrewingRecipe) recipe).getBase().test(stack))
+				return true;
+		}
+		return false;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <C extends Inventory, R> Optional<R> getFirstMatch(List<Recipe<?>> candidates, C inventory, World world) {
+		for (Recipe<?> candidate : candidates) {
+			if (((Recipe<C>) candidate).matches(inventory, world))
+				return Optional.of((R) candidate);
+		}
+		return Optional.empty();
+	}
+
+	static class ItemIndex<R> {
+		private final Int2ObjectMap<List<Recipe<?>>> candidates;
+		private final List<Recipe<?>> wildcards;
+
+		private ItemIndex(Int2ObjectMap<List<Recipe<?>>> candidates, List<Recipe<?>> wildcards) {
+			this.candidates = candidates;
+			this.wildcards = wildcards;
+		}
+
+		static <R> ItemIndex<R> build(Map<Identifier, Recipe<?>> recipes, Class<R> recipeClass, Function<R, Ingredient> keyIngredient) {
+			Int2ObjectOpenHashMap<List<Recipe<?>>> candidates = new Int2ObjectOpenHashMap<>();
+			List<Recipe<?>> wildcards = new ArrayList<>();
+			if (recipes == null) {
+				return new ItemIndex<>(candidates, Collections.emptyList());
+			}
+			for (Recipe<?> recipe : recipes.values()) {
+				IntCollection ids = null;
+				if (recipeClass.isInstance(recipe)) {
+					Ingredient ingredient = keyIngredient.apply(recipeClass.cast(recipe));
+					if (ingredient != null) {
+						ids = ((IIngredient) (Object) ingredient).nbtCrafting$getMatchingItemIds();
+					}
+				}
+				if (ids == null) {
+					// wildcards are candidates for all items, so they have to be merged into every list in order
+					wildcards.add(recipe);
+					for (List<Recipe<?>> list : candidates.values()) {
+						list.add(recipe);
+					}
+					continue;
+				}
+				IntIterator iterator = ids.iterator();
+				while (iterator.hasNext()) {
+					int id = iterator.nextInt();
+					List<Recipe<?>> list = candidates.get(id);
+					if (list == null) {
+						list = new ArrayList<>(wildcards);
+						candidates.put(id, list);
+					} else if (!list.isEmpty() && list.get(list.size() - 1) == recipe) {
+						continue;
+					}
+					list.add(recipe);
+				}
+			}
+			return new ItemIndex<>(candidates, wildcards);
+		}
+
+		List<Recipe<?>> getCandidates(ItemStack stack) {
+			List<Recipe<?>> list = candidates.get(Registry.ITEM.getRawId(stack.getItem()));
+			return list == null ? wildcards : list;
+		}
+	}
+}
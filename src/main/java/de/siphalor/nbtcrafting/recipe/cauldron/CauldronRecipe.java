@@ -36,8 +36,16 @@ import de.siphalor.nbtcrafting.api.nbt.NbtUtil;
 import de.siphalor.nbtcrafting.api.recipe.NBTCRecipe;
 import de.siphalor.nbtcrafting.dollar.Dollar;
 import de.siphalor.nbtcrafting.dollar.DollarParser;
+import de.siphalor.nbtcrafting.dollar.DollarReferenceFrame;
 
 public class CauldronRecipe implements NBTCRecipe<TemporaryCauldronInventory>, ServerRecipe {
+	private static final ClassValue<Boolean> MAP_BASED_REFERENCES = new ClassValue<Boolean>() {
+		@Override
+		protected Boolean computeValue(Class<?> type) {
+			return RecipeUtil.overridesDollarReferenceBuilder(type, CauldronRecipe.class, TemporaryCauldronInventory.class);
+		}
+	};
+
 	private final Identifier identifier;
 	public final Ingredient input;
 	public final ItemStack output;
@@ -85,7 +93,13 @@ public class CauldronRecipe implements NBTCRecipe<TemporaryCauldronInventory>, S
 
 		inventory.getInvStack(0).decrement(1);
 
-		return RecipeUtil.applyDollars(output.copy(), outputDollars, buildDollarReference(inventory));
+		DollarReferenceFrame frame = DollarReferenceFrame.acquire();
+		try {
+			fillDollarReference(inventory, null, frame);
+			return RecipeUtil.applyDollars(output.copy(), outputDollars, frame);
+		} finally {
+			frame.release();
+		}
 	}
 
 	@Override
@@ -122,4 +136,13 @@ public class CauldronRecipe implements NBTCRecipe<TemporaryCauldronInventory>, S
 	public Map<String, Object> buildDollarReference(TemporaryCauldronInventory inv) {
 		return ImmutableMap.of("ingredient", NbtUtil.getTagOrEmpty(inv.getInvStack(0)));
 	}
+
+	@Override
+	public void fillDollarReference(TemporaryCauldronInventory inv, int[] ingredientToStackResolution, DollarReferenceFrame frame) {
+		if (MAP_BASED_REFERENCES.get(getClass())) {
+			frame.putAll(buildDollarReference(inv, ingredientToStackResolution));
+			return;
+		}
+		frame.put("ingredient", NbtUtil.getTagOrEmpty(inv.getInvStack(0)));
+	}
 }
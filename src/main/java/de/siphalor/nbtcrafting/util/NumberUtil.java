@@ -17,19 +17,9 @@
 
 package de.siphalor.nbtcrafting.util;
 
-import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 
 public class NumberUtil {
-	private static final Class<?>[] NUMBER_TYPES = {
-			Character.class,
-			Byte.class,
-			Short.class,
-			Integer.class,
-			Long.class,
-			Float.class,
-			Double.class
-	};
 	private static final String[] NUMBER_TYPE_IDENTIFIERS = {
 			"",
 			"cCb",
@@ -56,14 +46,25 @@ public class NumberUtil {
 	}
 
 	public static int getType(Number number) {
-		return ArrayUtils.indexOf(NUMBER_TYPES, number.getClass());
+		// Ordered by how common the types are in dollar expressions
+		if (number instanceof Integer) {
+			return INTEGER;
+		} else if (number instanceof Double) {
+			return DOUBlE;
+		} else if (number instanceof Byte) {
+			return BYTE;
+		} else if (number instanceof Short) {
+			return SHORT;
+		} else if (number instanceof Long) {
+			return LONG;
+		} else if (number instanceof Float) {
+			return FLOAT;
+		}
+		return -1;
 	}
 
 	public static int findSmallestType(Number a, Number b) {
-		int typeA = ArrayUtils.indexOf(NUMBER_TYPES, a.getClass());
-		int typeB = ArrayUtils.indexOf(NUMBER_TYPES, b.getClass());
-
-		return Math.max(typeA, typeB);
+		return Math.max(getType(a), getType(b));
 	}
 
 	public static Number denullify(Number number) {
@@ -95,6 +96,11 @@ public class NumberUtil {
 	}
 
 	public static Number sum(Number a, Number b) {
+		if (a instanceof Integer && b instanceof Integer) {
+			return (Integer) a + (Integer) b;
+		} else if (a instanceof Double && b instanceof Double) {
+			return (Double) a + (Double) b;
+		}
 		a = denullify(a);
 		b = denullify(b);
 		switch (findSmallestType(a, b)) {
@@ -115,6 +121,11 @@ public class NumberUtil {
 	}
 
 	public static Number difference(Number a, Number b) {
+		if (a instanceof Integer && b instanceof Integer) {
+			return (Integer) a - (Integer) b;
+		} else if (a instanceof Double && b instanceof Double) {
+			return (Double) a - (Double) b;
+		}
 		a = denullify(a);
 		b = denullify(b);
 		switch (findSmallestType(a, b)) {
@@ -135,6 +146,11 @@ public class NumberUtil {
 	}
 
 	public static Number product(Number a, Number b) {
+		if (a instanceof Integer && b instanceof Integer) {
+			return (Integer) a * (Integer) b;
+		} else if (a instanceof Double && b instanceof Double) {
+			return (Double) a * (Double) b;
+		}
 		a = denullify(a);
 		b = denullify(b);
 		switch (findSmallestType(a, b)) {
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2020-2022 Siphalor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package de.siphalor.nbtcrafting.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonSyntaxException;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.InvalidIdentifierException;
+import net.minecraft.util.JsonHelper;
+
+import de.siphalor.nbtcrafting.NbtCrafting;
+import de.siphalor.nbtcrafting.api.JsonPreprocessor;
+import de.siphalor.nbtcrafting.api.nbt.NbtUtil;
+import de.siphalor.nbtcrafting.dollar.DollarParser;
+
+/**
+ * Prepares the <code>data</code> objects of recipe jsons in parallel before the recipe manager deserializes them sequentially.
+ * <p>
+ * The prepared compounds are kept per thread and looked up by the identity of their <code>data</code> json object.
+ * Each prepared compound is only handed out once, since item stacks take ownership of it.
+ * <p>
+ * Note that preparing runs the {@link JsonPreprocessor}, which edits the <code>data</code> objects in place.
+ * Every <code>data</code> object is only processed by a single task.
+ */
+public class RecipeDataCache {
+	private static final ThreadLocal<Map<JsonObject, CompoundTag>> PREPARED = new ThreadLocal<>();
+
+	/**
+	 * Prepares the data of the given recipes on the common fork-join pool.
+	 * Also parses the dollar expressions of results and remainders into the expression pool.
+	 *
+	 * @param recipeJsons the recipe jsons that are going to be deserialized on the current thread
+	 */
+	public static void prepare(Collection<JsonObject> recipeJsons) {
+		// a reload that threw before it could clear would otherwise leave its compounds on this thread
+		clear();
+		long startTime = System.currentTimeMillis();
+		List<DataEntry> entries = recipeJsons.parallelStream()
+				.filter(RecipeDataCache::isSupported)
+				.flatMap(json -> {
+					List<DataEntry> recipeEntries = new ArrayList<>();
+					collectData(json, false, recipeEntries);
+					return recipeEntries.stream();
+				})
+				.collect(Collectors.toList());
+		entries.parallelStream().forEach(DataEntry::prepare);
+
+		Map<JsonObject, CompoundTag> prepared = new IdentityHashMap<>(entries.size());
+		for (DataEntry entry : entries) {
+			if (entry.tag != null) {
+				prepared.put(entry.data, entry.tag);
+			}
+		}
+		PREPARED.set(prepared);
+		NbtCrafting.logDebug("Prepared " + prepared.size() + " recipe data objects in " + (System.currentTimeMillis() - startTime) + "ms");
+	}
+
+	public static void clear() {
+		PREPARED.remove();
+	}
+
+	/**
+	 * Gets the compound for a <code>data</code> json object, either from the prepared ones or by converting it now.
+	 *
+	 * @param data the <code>data</code> json object
+	 * @return the resulting compound, the caller takes ownership of it
+	 */
+	public static CompoundTag getData(JsonObject data) {
+		Map<JsonObject, CompoundTag> prepared = PREPARED.get();
+		if (prepared != null) {
+			CompoundTag tag = prepared.remove(data);
+			if (tag != null) {
+				return tag;
+			}
+		}
+		return (CompoundTag) NbtUtil.asTag(JsonPreprocessor.process(data));
+	}
+
+	/**
+	 * Only vanilla and Nbt Crafting recipes are prepared, since other recipe types might use <code>data</code> differently.
+	 */
+	private static boolean isSupported(JsonObject json) {
+		try {
+			String namespace = new Identifier(JsonHelper.getString(json, "type", "")).getNamespace();
+			return namespace.equals("minecraft") || namespace.equals(NbtCrafting.MOD_ID);
+		} catch (JsonSyntaxException | InvalidIdentifierException e) {
+			return false;
+		}
+	}
+
+	private static void collectData(JsonElement element, boolean stack, List<DataEntry> entries) {
+		if (element.isJsonObject()) {
+			JsonObject object = element.getAsJsonObject();
+			// potions are added to the data while the stack is deserialized
+			if (object.has("data") && object.get("data").isJsonObject() && !object.has("potion")) {
+				entries.add(new DataEntry(object.getAsJsonObject("data"), stack));
+			}
+			for (Map.Entry<String, JsonElement> member : object.entrySet()) {
+				if (!member.getKey().equals("data")) {
+					collectData(member.getValue(), member.getKey().equals("result") || member.getKey().equals("remainder"), entries);
+				}
+			}
+		} else if (element.isJsonArray()) {
+			for (JsonElement child : (JsonArray) element) {
+				collectData(child, stack, entries);
+			}
+		}
+	}
+
+	private static class DataEntry {
+		final JsonObject data;
+		final boolean stack;
+		CompoundTag tag;
+
+		DataEntry(JsonObject data, boolean stack) {
+			this.data = data;
+			this.stack = stack;
+		}
+
+		void prepare() {
+			try {
+				JsonElement processed = JsonPreprocessor.process(data);
+				if (processed.isJsonObject()) {
+					tag = (CompoundTag) NbtUtil.asTag(processed);
+					if (stack) {
+						// conditions use dollars for ranges, so only stacks contain actual dollar expressions
+						DollarParser.extractDollars(tag, false);
+					}
+				}
+			} catch (Exception e) {
+				// errors are reported when the recipe is deserialized
+				tag = null;
+			}
+		}
+	}
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2020-2022 Siphalor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package de.siphalor.nbtcrafting.util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.util.registry.Registry;
+
+import de.siphalor.nbtcrafting.util.duck.IItemStack;
+
+/**
+ * Assigns numeric ids to item and nbt combinations, as used by the recipe finder.
+ * <p>
+ * Lookups of known stacks and ids don't lock: both tables are atomic arrays that only get replaced as a whole when they're resized or swept.
+ * Only the interning of new combinations is synchronized.
+ * Both tables are sized by the number of live entries, so they shrink again when entries get swept.
+ * <p>
+ * Entries expire by generation: a generation lasts {@link #GENERATION_MILLIS} and entries that haven't been used
+ * in the last {@link #KEPT_GENERATIONS} generations are removed when a new generation starts.
+ * Ids are never reused, so an outdated id resolves to an empty stack but never to a different one.
+ */
+public class StackIdInterner {
+	public static final long GENERATION_MILLIS = 60_000;
+	public static final int KEPT_GENERATIONS = 5;
+	private static final int INITIAL_CAPACITY = 256;
+
+	private final Object writeLock = new Object();
+	/**
+	 * Open addressing hash table with linear probing, its length is always a power of two.
+	 */
+	private volatile AtomicReferenceArray<Entry> table = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+	/**
+	 * Open addressing hash table with linear probing that maps ids to entries, it always has the same length as {@link #table}.
+	 * Id <code>0</code> is reserved for empty stacks.
+	 */
+	private volatile AtomicReferenceArray<Entry> idTable = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+	private int nextId = 1;
+	private int size;
+
+	private volatile int generation;
+	private volatile long nextGenerationTime = System.currentTimeMillis() + GENERATION_MILLIS;
+
+	/**
+	 * @param stack the stack to get the id for
+	 * @return a positive id for the stack's item and nbt or <code>0</code> for empty stacks
+	 */
+	public int getId(ItemStack stack) {
+		if (stack.isEmpty())
+			return 0;
+		int generation = updateGeneration();
+		int itemId = Registry.ITEM.getRawId(stack.getItem());
+		CompoundTag tag = stack.hasTag() && !stack.getTag().isEmpty() ? stack.getTag() : null;
+		int hash = hash(itemId, tag);
+
+		Entry entry = find(table, itemId, tag, hash);
+		// an outdated table may still contain swept entries
+		if (entry == null || entry.removed) {
+			synchronized (writeLock) {
+				entry = find(table, itemId, tag, hash);
+				if (entry == null) {
+					entry = insert(itemId, tag == null ? null : tag.copy(), hash);
+				}
+			}
+		}
+		if (entry.lastUsedGeneration != generation)
+			entry.lastUsedGeneration = generation;
+		return entry.id;
+	}
+
+	/**
+	 * @param id an id returned by {@link #getId(ItemStack)}
+	 * @return a new stack of the item and nbt of the id or {@link ItemStack#EMPTY} for unknown ids
+	 */
+	public ItemStack getStack(int id) {
+		if (id <= 0)
+			return ItemStack.EMPTY;
+		Entry entry = findById(idTable, id);
+		if (entry == null || entry.removed)
+			return ItemStack.EMPTY;
+		// ids that are only resolved are still in use
+		int generation = this.generation;
+		if (entry.lastUsedGeneration != generation)
+			entry.lastUsedGeneration = generation;
+		ItemStack stack = new ItemStack(Item.byRawId(entry.itemId));
+		// the interned tag is part of the table key, so it must not be modified through the stack
+		((IItemStack) (Object) stack).nbtCrafting$setRawTag(entry.tag == null ? null : entry.tag.copy());
+		return stack;
+	}
+
+	private static int hash(int itemId, CompoundTag tag) {
+		int hash = itemId * 31 + (tag == null ? 0 : tag.hashCode());
+		// spread the bits, as the lower ones are used for the table index
+		return hash ^ (hash >>> 16);
+	}
+
+	private static Entry find(AtomicReferenceArray<Entry> table, int itemId, CompoundTag tag, int hash) {
+		int mask = table.length() - 1;
+		for (int i = hash & mask; ; i = (i + 1) & mask) {
+			Entry entry = table.get(i);
+			if (entry == null)
+				return null;
+			if (entry.hash == hash && entry.itemId == itemId && (entry.tag == tag || entry.tag != null && entry.tag.equals(tag)))
+				return entry;
+		}
+	}
+
+	private static Entry findById(AtomicReferenceArray<Entry> idTable, int id) {
+		int mask = idTable.length() - 1;
+		for (int i = idHash(id) & mask; ; i = (i + 1) & mask) {
+			Entry entry = idTable.get(i);
+			if (entry == null || entry.id == id)
+				return entry;
+		}
+	}
+
+	private static int idHash(int id) {
+		// ids are sequential, so multiply them to scatter runs of ids
+		int hash = id * 0x9e3779b9;
+		return hash ^ (hash >>> 16);
+	}
+
+	private static void place(AtomicReferenceArray<Entry> table, int hash, Entry entry) {
+		int mask = table.length() - 1;
+		int i = hash & mask;
+		while (table.get(i) != null) {
+			i = (i + 1) & mask;
+		}
+		table.set(i, entry);
+	}
+
+	// requires the write lock
+	private Entry insert(int itemId, CompoundTag tag, int hash) {
+		int id = nextId++;
+		Entry entry = new Entry(itemId, tag, hash, id);
+		entry.lastUsedGeneration = generation;
+
+		size++;
+		if (size * 2 > table.length()) {
+			// the new entry isn't in the tables yet, so it gets placed below
+			rebuildTables(table.length() * 2);
+		}
+		// the id has to be resolvable before anyone can find the entry
+		place(idTable, idHash(id), entry);
+		place(table, hash, entry);
+		return entry;
+	}
+
+	/**
+	 * Replaces both tables with tables of the given capacity that contain all entries that haven't been removed.
+	 * This only walks the current table, so it takes time proportional to the number of live entries.
+	 */
+	// requires the write lock
+	private void rebuildTables(int capacity) {
+		AtomicReferenceArray<Entry> oldTable = table;
+		AtomicReferenceArray<Entry> newTable = new AtomicReferenceArray<>(capacity);
+		AtomicReferenceArray<Entry> newIdTable = new AtomicReferenceArray<>(capacity);
+		for (int i = 0; i < oldTable.length(); i++) {
+			Entry entry = oldTable.get(i);
+			if (entry != null && !entry.removed) {
+				place(newIdTable, idHash(entry.id), entry);
+				place(newTable, entry.hash, entry);
+			}
+		}
+		idTable = newIdTable;
+		table = newTable;
+	}
+
+	private int updateGeneration() {
+		long time = System.currentTimeMillis();
+		if (time < nextGenerationTime)
+			return generation;
+		synchronized (writeLock) {
+			if (time >= nextGenerationTime) {
+				nextGenerationTime = time + GENERATION_MILLIS;
+				generation++;
+				sweep();
+			}
+			return generation;
+		}
+	}
+
+	// requires the write lock
+	private void sweep() {
+		int oldestKept = generation - KEPT_GENERATIONS + 1;
+		AtomicReferenceArray<Entry> table = this.table;
+		boolean removed = false;
+		for (int i = 0; i < table.length(); i++) {
+			Entry entry = table.get(i);
+			if (entry != null && entry.lastUsedGeneration - oldestKept < 0) {
+				// readers that still hold the old tables check this flag
+				entry.removed = true;
+				size--;
+				removed = true;
+			}
+		}
+		if (removed) {
+			int capacity = INITIAL_CAPACITY;
+			while (size * 2 > capacity) {
+				capacity <<= 1;
+			}
+			rebuildTables(capacity);
+		}
+	}
+
+	static class Entry {
+		final int itemId;
+		final CompoundTag tag;
+		final int hash;
+		final int id;
+		volatile int lastUsedGeneration;
+		volatile boolean removed;
+
+		Entry(int itemId, CompoundTag tag, int hash, int id) {
+			this.itemId = itemId;
+			this.tag = tag;
+			this.hash = hash;
+			this.id = id;
+		}
+	}
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright 2020-2022 Siphalor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package de.siphalor.nbtcrafting.util.duck;
+
+import net.minecraft.item.ItemStack;
+
+public interface IRecipeFinder {
+	/**
+	 * Like {@link net.minecraft.recipe.RecipeFinder#getStackFromId(int)}, but caches the stacks for the lifetime of this finder.
+	 * The returned stacks must not be modified.
+	 */
+	ItemStack nbtCrafting$getCachedStack(int id);
+}
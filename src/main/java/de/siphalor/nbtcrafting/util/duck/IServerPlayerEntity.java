@@ -22,4 +22,8 @@ public interface IServerPlayerEntity {
 
 	void nbtCrafting$setClientModPresent(boolean present);
 
+	int nbtCrafting$getClientModProtocolVersion();
+
+	void nbtCrafting$setClientModProtocolVersion(int protocolVersion);
+
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2020-2022 Siphalor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package de.siphalor.nbtcrafting.testmod;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A minimal, deterministic timing harness for the testmod benchmarks.
+ * Each benchmark runs a fixed number of warmup and measured iterations and logs the average time per operation.
+ */
+public class Benchmark {
+	private static final Logger LOGGER = LogManager.getLogger("nbtcrafting_testmod");
+
+	private final String name;
+	private final int warmupIterations;
+	private final int measuredIterations;
+
+	public Benchmark(String name, int warmupIterations, int measuredIterations) {
+		this.name = name;
+		this.warmupIterations = warmupIterations;
+		this.measuredIterations = measuredIterations;
+	}
+
+	/**
+	 * Runs the given operation and logs its average duration.
+	 * The operation returns a value so that the JIT can't eliminate it.
+	 *
+	 * @param operation the operation to measure
+	 * @param operationsPerIteration the number of operations that a single call performs
+	 * @return the average duration of a single operation in nanoseconds
+	 */
+	public double run(Operation operation, int operationsPerIteration) {
+		long sink = 0;
+		for (int i = 0; i < warmupIterations; i++) {
+			sink += operation.run();
+		}
+		long startTime = System.nanoTime();
+		for (int i = 0; i < measuredIterations; i++) {
+			sink += operation.run();
+		}
+		long duration = System.nanoTime() - startTime;
+		double nanosPerOperation = (double) duration / ((long) measuredIterations * operationsPerIteration);
+		LOGGER.info(String.format("[Benchmark] %s: %.1f ns/op, %.0f ops/s (sink %d)", name, nanosPerOperation, 1e9 / nanosPerOperation, sink));
+		return nanosPerOperation;
+	}
+
+	public static void log(String message) {
+		LOGGER.info("[Benchmark] " + message);
+	}
+
+	public static void fail(String message) {
+		LOGGER.error("[Benchmark] " + message);
+	}
+
+	@FunctionalInterface
+	public interface Operation {
+		long run();
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2020-2022 Siphalor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package de.siphalor.nbtcrafting.testmod;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.siphalor.nbtcrafting.dollar.DollarParser;
+
+/**
+ * Measures how fast {@link DollarParser} parses a corpus of dollar expressions like the ones found in data packs.
+ * The expression pool is bypassed, so that every iteration actually lexes and parses the whole corpus.
+ */
+public class DollarParserBenchmark {
+	private static final int CORPUS_SIZE = 1000;
+	private static final String[] TEMPLATES = {
+			"i%1$d.Damage + %2$d",
+			"base.display.Name",
+			"ingredient.Enchantments[%1$d].lvl * 2 + %2$d",
+			"(i%1$d.Count + i%2$d.Count) / 2 # i",
+			"i%1$d.tag.charged ? \"charged\" : 'empty \\' %2$d'",
+			"'Level ' + (i%1$d.tag.level # s)",
+			"i%1$d.display.Lore[%2$d]",
+			"i%1$d.Damage - %2$d",
+	};
+
+	public static void run() {
+		String[] corpus = buildCorpus();
+		int characters = 0;
+		for (String expression : corpus) {
+			if (new DollarParser(expression).parse() == null) {
+				Benchmark.fail("Failed to parse benchmark expression: " + expression);
+				return;
+			}
+			characters += expression.length();
+		}
+		Benchmark.log("Dollar corpus: " + corpus.length + " expressions, " + characters + " characters");
+
+		new Benchmark("DollarParser parse", 200, 1000).run(() -> {
+			long count = 0;
+			for (String expression : corpus) {
+				if (new DollarParser(expression).parse() != null) {
+					count++;
+				}
+			}
+			return count;
+		}, corpus.length);
+	}
+
+	private static String[] buildCorpus() {
+		List<String> corpus = new ArrayList<>(CORPUS_SIZE);
+		for (int i = 0; i < CORPUS_SIZE; i++) {
+			corpus.add(String.format(TEMPLATES[i % TEMPLATES.length], i % 9, i % 37));
+		}
+		return corpus.toArray(new String[0]);
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2020-2022 Siphalor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package de.siphalor.nbtcrafting.testmod;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import net.minecraft.nbt.Tag;
+
+import de.siphalor.nbtcrafting.api.nbt.NbtUtil;
+
+/**
+ * Measures the conversion throughput of {@link NbtUtil#asTag(JsonElement)} and {@link NbtUtil#toJson(Tag)}
+ * on recipe style <code>data</code> objects.
+ */
+public class NbtConversionBenchmark {
+	private static final int DOCUMENTS = 200;
+
+	public static void run() {
+		JsonElement[] documents = new JsonElement[DOCUMENTS];
+		Tag[] tags = new Tag[DOCUMENTS];
+		for (int i = 0; i < DOCUMENTS; i++) {
+			// parse from text so that the numbers are lazily parsed, as they are in data packs
+			documents[i] = new JsonParser().parse(buildDocument(i).toString());
+			tags[i] = NbtUtil.asTag(documents[i]);
+			if (!tags[i].equals(NbtUtil.asTag(NbtUtil.toJson(tags[i])))) {
+				Benchmark.fail("NBT does not survive the json round trip: " + tags[i].asString());
+				return;
+			}
+		}
+
+		new Benchmark("NbtUtil json to NBT", 500, 2000).run(() -> {
+			long checksum = 0;
+			for (JsonElement document : documents) {
+				checksum += NbtUtil.asTag(document).getType();
+			}
+			return checksum;
+		}, DOCUMENTS);
+		new Benchmark("NbtUtil NBT to json", 500, 2000).run(() -> {
+			long checksum = 0;
+			for (Tag tag : tags) {
+				checksum += NbtUtil.toJson(tag).isJsonObject() ? 1 : 0;
+			}
+			return checksum;
+		}, DOCUMENTS);
+	}
+
+	private static JsonObject buildDocument(int seed) {
+		JsonObject document = new JsonObject();
+		document.addProperty("Damage", seed % 250);
+		document.addProperty("Unbreakable", seed % 2 == 0);
+		document.addProperty("CustomModelData", seed * 104729L);
+
+		JsonObject display = new JsonObject();
+		display.addProperty("Name", "{\"text\":\"Item " + seed + "\"}");
+		JsonArray lore = new JsonArray();
+		for (int i = 0; i < seed % 4 + 1; i++) {
+			lore.add("{\"text\":\"Line " + i + "\"}");
+		}
+		display.add("Lore", lore);
+		display.addProperty("color", seed * 65521 % 16777216);
+		document.add("display", display);
+
+		JsonArray enchantments = new JsonArray();
+		for (int i = 0; i < seed % 5; i++) {
+			JsonObject enchantment = new JsonObject();
+			enchantment.addProperty("id", "minecraft:enchantment_" + i);
+			enchantment.addProperty("lvl", (short) (i + 1));
+			enchantments.add(enchantment);
+		}
+		document.add("Enchantments", enchantments);
+
+		JsonObject attributes = new JsonObject();
+		attributes.addProperty("Amount", seed / 7.0);
+		attributes.addProperty("Scale", 0.5f + seed % 3);
+		JsonArray uuid = new JsonArray();
+		for (int i = 0; i < 4; i++) {
+			uuid.add(seed * 31 + i);
+		}
+		attributes.add("UUID", uuid);
+		document.add("Attribute", attributes);
+		return document;
+	}
+}
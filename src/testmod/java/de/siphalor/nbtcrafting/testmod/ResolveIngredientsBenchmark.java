@@ -0,0 +1,123 @@
+/*
+ * Copyright 2020-2022 Siphalor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package de.siphalor.nbtcrafting.testmod;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import net.minecraft.inventory.BasicInventory;
+import net.minecraft.inventory.Inventory;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.recipe.Ingredient;
+import net.minecraft.util.registry.Registry;
+
+import de.siphalor.nbtcrafting.api.RecipeUtil;
+
+/**
+ * Measures {@link RecipeUtil#resolveIngredients(List, Inventory)} on shapeless layouts with overlapping ingredients.
+ * <p>
+ * In the staircase layouts, stack <code>i</code> holds item <code>i</code> and ingredient <code>j</code> accepts the items <code>0</code> to <code>n - 1 - j</code>.
+ * Greedy matching hands the low stacks to the broad ingredients first, so it fails at ingredient <code>ceil(n / 2)</code>.
+ * The remaining ingredients are matched through augmenting paths that move the earlier ingredients to higher stacks.
+ * The former backtracking fallback was exponential on these layouts.
+ */
+public class ResolveIngredientsBenchmark {
+	private static final long SEED = 0x6e62746372616674L;
+	private static final int[] SIZES = {9, 25, 36, 81};
+	/**
+	 * The number of warmup resolutions, independent of the layout size, so that even the large layouts get compiled before they're measured.
+	 */
+	private static final int WARMUP_ITERATIONS = 20000;
+
+	public static void run() {
+		for (int size : SIZES) {
+			run("uniform", size, uniformIngredients(size), false);
+			run("staircase", size, staircaseIngredients(size), false);
+			run("shuffled staircase", size, staircaseIngredients(size), true);
+		}
+	}
+
+	private static void run(String layout, int size, List<Ingredient> ingredients, boolean shuffle) {
+		List<ItemStack> stacks = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			stacks.add(new ItemStack(getItem(i)));
+		}
+		if (shuffle) {
+			Random random = new Random(SEED + size);
+			Collections.shuffle(stacks, random);
+			Collections.shuffle(ingredients, random);
+		}
+		Inventory inventory = new BasicInventory(stacks.toArray(new ItemStack[0]));
+
+		if (!verify(RecipeUtil.resolveIngredients(ingredients, inventory), ingredients, inventory)) {
+			Benchmark.fail("resolveIngredients returned an invalid matching for the " + layout + " layout with " + size + " slots");
+			return;
+		}
+
+		int iterations = Math.max(2000, 2000000 / (size * size));
+		new Benchmark("resolveIngredients " + layout + " " + size + " slots", WARMUP_ITERATIONS, iterations)
+				.run(() -> RecipeUtil.resolveIngredients(ingredients, inventory)[0], 1);
+	}
+
+	private static List<Ingredient> uniformIngredients(int size) {
+		Item[] items = new Item[size];
+		for (int i = 0; i < size; i++) {
+			items[i] = getItem(i);
+		}
+		List<Ingredient> ingredients = new ArrayList<>(size);
+		for (int j = 0; j < size; j++) {
+			ingredients.add(Ingredient.ofItems(items));
+		}
+		return ingredients;
+	}
+
+	private static List<Ingredient> staircaseIngredients(int size) {
+		List<Ingredient> ingredients = new ArrayList<>(size);
+		for (int j = 0; j < size; j++) {
+			Item[] items = new Item[size - j];
+			for (int i = 0; i < items.length; i++) {
+				items[i] = getItem(i);
+			}
+			ingredients.add(Ingredient.ofItems(items));
+		}
+		return ingredients;
+	}
+
+	private static boolean verify(int[] resolved, List<Ingredient> ingredients, Inventory inventory) {
+		boolean[] used = new boolean[inventory.getInvSize()];
+		for (int j = 0; j < resolved.length; j++) {
+			int stack = resolved[j];
+			if (stack < 0 || used[stack] || !ingredients.get(j).test(inventory.getInvStack(stack))) {
+				return false;
+			}
+			used[stack] = true;
+		}
+		return true;
+	}
+
+	/**
+	 * Gets a distinct, non-air item for the given index.
+	 */
+	private static Item getItem(int index) {
+		return Registry.ITEM.get(index + 1);
+	}
+}